@@ -0,0 +1,68 @@
+package org.orienteer.jnpm;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Invocation;
+
+/**
+ * {@link Interceptor} to request abbreviated ("corgi") packages metadata for calls marked by {@link ResolutionCall}
+ */
+class AbbreviatedMetadataInterceptor implements Interceptor {
+
+	public static final String ABBREVIATED_MEDIA_TYPE = "application/vnd.npm.install-v1+json";
+	public static final String ABBREVIATED_ACCEPT = ABBREVIATED_MEDIA_TYPE+"; q=1.0, application/json; q=0.8, */*";
+
+	/**
+	 * Query parameter to distinguish abbreviated documents in HTTP cache: it's removed before sending to the registry
+	 */
+	static final String CACHE_KEY_MARKER = "jnpm-abbreviated";
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		if(isResolutionCall(request)) {
+			request = request.newBuilder()
+							.header("Accept", ABBREVIATED_ACCEPT)
+							.build();
+		}
+		if(ABBREVIATED_ACCEPT.equals(request.header("Accept"))) {
+			//Registries and proxies might not send "Vary: Accept", so full and abbreviated documents need own cache entries
+			request = request.newBuilder()
+							.url(request.url().newBuilder().addQueryParameter(CACHE_KEY_MARKER, "1").build())
+							.build();
+		}
+		return chain.proceed(request);
+	}
+
+	/**
+	 * Network {@link Interceptor} which removes cache key marker of abbreviated requests before sending them
+	 */
+	static class CacheKeyMarkerRemover implements Interceptor {
+
+		@Override
+		public Response intercept(Chain chain) throws IOException {
+			Request request = chain.request();
+			if(request.url().queryParameter(CACHE_KEY_MARKER)==null) return chain.proceed(request);
+			Request sent = request.newBuilder()
+							.url(request.url().newBuilder().removeAllQueryParameters(CACHE_KEY_MARKER).build())
+							.build();
+			//Response is bound to the marked request to be stored in the cache under marked URL
+			return chain.proceed(sent).newBuilder().request(request).build();
+		}
+	}
+
+	static boolean isResolutionCall(Request request) {
+		Invocation invocation = request.tag(Invocation.class);
+		return invocation!=null && invocation.method().isAnnotationPresent(ResolutionCall.class);
+	}
+
+	static boolean isAbbreviated(MediaType mediaType) {
+		return mediaType!=null 
+				&& ABBREVIATED_MEDIA_TYPE.equalsIgnoreCase(mediaType.type()+"/"+mediaType.subtype());
+	}
+
+}
@@ -0,0 +1,151 @@
+package org.orienteer.jnpm;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * {@link Interceptor} to limit number of in-flight requests per host adaptively (AIMD):
+ * limit is halved when registry throttles requests and grows back by one per window of successful requests.
+ * Request stays in flight until its response body is closed, so streamed downloads are limited too.
+ */
+class AdaptiveConcurrencyInterceptor implements Interceptor {
+
+	private static final long CANCELLATION_CHECK_PERIOD = 100; //In milliseconds
+
+	private final int maxLimit;
+	private final Map<String, HostLimit> limits = new ConcurrentHashMap<>();
+
+	/**
+	 * State of a single host
+	 */
+	private static class HostLimit {
+		private double limit;
+		private int inFlight;
+		private int waiting;
+
+		HostLimit(int limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * Wait for a free slot
+		 * @param call call to acquire a slot for: waiting stops if the call is canceled
+		 * @param timeoutMillis maximal time to wait for a slot
+		 */
+		synchronized void acquire(Call call, long timeoutMillis) throws IOException {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			waiting++;
+			try {
+				while(inFlight>=(int)limit) {
+					if(call.isCanceled()) throw new IOException("Canceled");
+					long toWait = deadline - System.currentTimeMillis();
+					if(toWait<=0) throw new InterruptedIOException("Timeout while waiting for a slot");
+					//Cancellation doesn't notify waiters, so it's checked periodically
+					wait(Math.min(toWait, CANCELLATION_CHECK_PERIOD));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a slot");
+			} finally {
+				waiting--;
+			}
+			inFlight++;
+		}
+
+		synchronized void release(boolean throttled, int maxLimit) {
+			inFlight--;
+			if(throttled) limit = Math.max(1, limit/2);
+			else limit = Math.min(maxLimit, limit + 1/limit);
+			notifyAll();
+		}
+
+		synchronized int getLimit() {
+			return (int)limit;
+		}
+
+		synchronized int getWaiting() {
+			return waiting;
+		}
+	}
+
+	public AdaptiveConcurrencyInterceptor(JNPMSettings settings) {
+		this(settings.getMaxRequestsPerHost());
+	}
+
+	/**
+	 * @param maxLimit maximal number of in-flight requests per host
+	 */
+	public AdaptiveConcurrencyInterceptor(int maxLimit) {
+		this.maxLimit = Math.max(1, maxLimit);
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		HostLimit hostLimit = limits.computeIfAbsent(chain.request().url().host(), h -> new HostLimit(maxLimit));
+		long callTimeout = chain.call().timeout().timeoutNanos();
+		hostLimit.acquire(chain.call(), callTimeout>0?TimeUnit.NANOSECONDS.toMillis(callTimeout)
+													  :chain.connectTimeoutMillis());
+		Response response;
+		try {
+			response = chain.proceed(chain.request());
+		} catch (IOException | RuntimeException e) {
+			hostLimit.release(false, maxLimit);
+			throw e;
+		}
+		boolean throttled = RetryInterceptor.isThrottled(response.code());
+		ResponseBody body = response.body();
+		if(body==null) {
+			hostLimit.release(throttled, maxLimit);
+			return response;
+		}
+		return response.newBuilder()
+					.body(releaseOnClose(body, () -> hostLimit.release(throttled, maxLimit)))
+					.build();
+	}
+
+	private static ResponseBody releaseOnClose(ResponseBody body, Runnable release) {
+		AtomicBoolean released = new AtomicBoolean();
+		BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if(released.compareAndSet(false, true)) release.run();
+				}
+			}
+		});
+		return ResponseBody.create(body.contentType(), body.contentLength(), source);
+	}
+
+	/**
+	 * @param host host to check
+	 * @return current limit of in-flight requests for the host
+	 */
+	public int getLimit(String host) {
+		HostLimit hostLimit = limits.get(host);
+		return hostLimit!=null?hostLimit.getLimit():maxLimit;
+	}
+
+	/**
+	 * @param host host to check
+	 * @return number of requests to the host which are waiting for a free slot
+	 */
+	public int getWaiting(String host) {
+		HostLimit hostLimit = limits.get(host);
+		return hostLimit!=null?hostLimit.getWaiting():0;
+	}
+
+}
@@ -39,6 +39,8 @@ public class AuthorizationInterceptor implements Interceptor {
 	@Override
 	public Response intercept(Chain chain) throws IOException {
 		Request request = chain.request();
+		//Credentials of the registry should not be sent to its mirrors
+		if(request.tag(RegistryMirrorsInterceptor.Mirror.class)!=null) return chain.proceed(request);
 		if(basicAuth) {
 			request = request.newBuilder()
 								.addHeader("Authorization", Credentials.basic(username, password))
@@ -0,0 +1,233 @@
+package org.orienteer.jnpm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.VersionRange;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.reactivex.Maybe;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Synchronous client for NPM registry which executes plain OkHttp calls on the calling thread.
+ * Intended for callers which block cheaply: virtual threads or structured concurrency.
+ * Shares in-memory caches and resolution memo with {@link RxJNPMService} of the same {@link JNPMService}.
+ */
+public class BlockingJNPMClient {
+
+	private static final TypeReference<Map<String, String>> DIST_TAGS_TYPE = new TypeReference<Map<String, String>>() {};
+
+	private final JNPMSettings settings;
+	private final Function<String, OkHttpClient> httpClients;
+	private final ObjectMapper mapper;
+	private final ResolutionMetadataParser resolutionParser;
+	private final CachingRxJNPMService cachingService;
+
+	BlockingJNPMClient(JNPMSettings settings, Function<String, OkHttpClient> httpClients,
+						ObjectMapper mapper, CachingRxJNPMService cachingService) {
+		this.settings = settings;
+		this.httpClients = httpClients;
+		this.mapper = mapper;
+		this.resolutionParser = new ResolutionMetadataParser(mapper.getFactory());
+		this.cachingService = cachingService;
+	}
+
+	/**
+	 * @param packageName name of the package to lookup
+	 * @return full package information or null if package was not found
+	 */
+	public PackageInfo getPackageInfo(String packageName) {
+		return load(cachingService.getPackageInfoCache(), packageName,
+					() -> index(fetch(packageName, packageUrl(packageName), false, this::parsePackageInfo)));
+	}
+
+	/**
+	 * Retrieve package information required for versions resolution
+	 * @param packageName name of the package to lookup
+	 * @return package information which might contain only fields required for installation or null if not found
+	 * @see RxJNPMService#getPackageInfoForResolution(String)
+	 */
+	public PackageInfo getPackageInfoForResolution(String packageName) {
+		if(!settings.isUseResolutionMetadata()) return getPackageInfo(packageName);
+		return load(cachingService.getPackageInfoCache(), cachingService.getResolutionKey(packageName),
+					() -> index(fetch(packageName, packageUrl(packageName), settings.isUseAbbreviatedMetadata(),
+								settings.getParsingProfile()==ParsingProfile.RESOLUTION
+										?resolutionParser::parsePackageInfo
+										:this::parsePackageInfo)));
+	}
+
+	/**
+	 * @param packageName name of the package
+	 * @param version exact version
+	 * @return version information or null if it was not found
+	 */
+	public VersionInfo getVersionInfo(String packageName, String version) {
+		return load(cachingService.getVersionInfoCache(), packageName+"@"+version,
+					() -> fetch(packageName, packageUrl(packageName).newBuilder().addPathSegment(version).build(), false,
+								in -> mapper.readValue(in, VersionInfo.class)));
+	}
+
+	/**
+	 * Retrieve version information required for versions resolution
+	 * @param packageName name of the package
+	 * @param version exact version
+	 * @return version information which might contain only fields required for installation or null if not found
+	 * @see RxJNPMService#getVersionInfoForResolution(String, String)
+	 */
+	public VersionInfo getVersionInfoForResolution(String packageName, String version) {
+		if(settings.getParsingProfile()!=ParsingProfile.RESOLUTION) return getVersionInfo(packageName, version);
+		return load(cachingService.getVersionInfoCache(), cachingService.getResolutionKey(packageName+"@"+version),
+					() -> fetch(packageName, packageUrl(packageName).newBuilder().addPathSegment(version).build(), false,
+								resolutionParser::parseVersionInfo));
+	}
+
+	/**
+	 * @param packageName name of the package
+	 * @return map from tag to version or null if package was not found
+	 */
+	public Map<String, String> getDistTags(String packageName) {
+		HttpUrl url = HttpUrl.get(getRegistryUrl(packageName)).newBuilder()
+							.addPathSegment("-").addPathSegment("package")
+							.addPathSegment(packageName).addPathSegment("dist-tags").build();
+		return load(cachingService.getDistTagsCache(), packageName,
+					() -> fetch(packageName, url, false, in -> mapper.readValue(in, DIST_TAGS_TYPE)));
+	}
+
+	public List<VersionInfo> retrieveVersions(String packageName, String versionConstraint) {
+		VersionRange range = VersionRange.compile(versionConstraint);
+		if(!isLoaded(packageName) && (range==null || range.isExactVersion())) {
+			VersionInfo version = resolveDirectly(packageName, versionConstraint, range);
+			return version!=null?Collections.singletonList(version):Collections.emptyList();
+		}
+		PackageInfo packageInfo = getPackageInfoForResolution(packageName);
+		if(packageInfo==null) return Collections.emptyList();
+		List<VersionInfo> versions = packageInfo.retrieveVersions(versionConstraint);
+		Collections.sort(versions);
+		return versions;
+	}
+
+	public List<VersionInfo> retrieveVersions(String expression) {
+		int indx = expression.lastIndexOf('@');
+		return indx>0?retrieveVersions(expression.substring(0, indx), expression.substring(indx+1))
+					 :retrieveVersions(expression, "latest");
+	}
+
+	public VersionInfo bestMatch(String packageName, String versionConstraint) {
+		VersionRange range = VersionRange.compile(versionConstraint);
+		if(!isLoaded(packageName) && (range==null || range.isExactVersion())) {
+			return resolveDirectly(packageName, versionConstraint, range);
+		}
+		return resolveByPackageInfo(packageName, versionConstraint);
+	}
+
+	public VersionInfo bestMatch(String expression) {
+		int indx = expression.lastIndexOf('@');
+		return indx>0?bestMatch(expression.substring(0, indx), expression.substring(indx+1))
+					 :bestMatch(expression, "latest");
+	}
+
+	/**
+	 * Resolve tags and exact versions without loading of whole package information
+	 */
+	private VersionInfo resolveDirectly(String packageName, String versionConstraint, VersionRange range) {
+		if(range!=null) return getVersionInfoForResolution(packageName, range.getExactVersion());
+		Map<String, String> tags;
+		try {
+			tags = getDistTags(packageName);
+		} catch (RuntimeException e) {
+			//Registry might not support dist-tags endpoint: package information is used instead
+			tags = null;
+		}
+		String version = tags!=null?tags.get(versionConstraint):null;
+		if(version!=null) return getVersionInfoForResolution(packageName, version);
+		return resolveByPackageInfo(packageName, versionConstraint);
+	}
+
+	private VersionInfo resolveByPackageInfo(String packageName, String versionConstraint) {
+		PackageInfo packageInfo = getPackageInfoForResolution(packageName);
+		return packageInfo!=null
+				?cachingService.getResolutionMemo().bestMatch(packageName, packageInfo, versionConstraint)
+				:null;
+	}
+
+	private boolean isLoaded(String packageName) {
+		return cachingService.getPackageInfoCache().contains(cachingService.getResolutionKey(packageName));
+	}
+
+	/**
+	 * Load value through the cache shared with {@link RxJNPMService}: on miss loader is executed on the calling thread
+	 */
+	private static <V> V load(SingleFlightCache<String, V> cache, String key, Callable<V> loader) {
+		try {
+			return cache.get(key, () -> Maybe.fromCallable(loader)).blockingGet();
+		} catch (RuntimeException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) throw new UncheckedIOException((IOException) cause);
+			throw e;
+		}
+	}
+
+	private PackageInfo index(PackageInfo packageInfo) {
+		PackageSearchIndex searchIndex = cachingService.getSearchIndex();
+		if(packageInfo!=null && searchIndex!=null) searchIndex.add(packageInfo);
+		return packageInfo;
+	}
+
+	private HttpUrl packageUrl(String packageName) {
+		return HttpUrl.get(getRegistryUrl(packageName)).newBuilder().addPathSegment(packageName).build();
+	}
+
+	/**
+	 * @param packageName name of the package
+	 * @return URL of the registry for scope of the package or default registry URL
+	 */
+	private String getRegistryUrl(String packageName) {
+		String scope = ScopedRegistry.getScopeOf(packageName);
+		if(scope!=null) {
+			for (ScopedRegistry registry : settings.getScopedRegistries()) {
+				if(scope.equals(registry.getScope())) return registry.getRegistryUrl();
+			}
+		}
+		return settings.getRegistryUrl();
+	}
+
+	private PackageInfo parsePackageInfo(InputStream in) throws IOException {
+		return mapper.readValue(in, PackageInfo.class);
+	}
+
+	private <T> T fetch(String packageName, HttpUrl url, boolean abbreviated, Parser<T> parser) throws IOException {
+		Request.Builder request = new Request.Builder().url(url);
+		if(abbreviated) request.header("Accept", AbbreviatedMetadataInterceptor.ABBREVIATED_ACCEPT);
+		try(Response response = httpClients.apply(packageName).newCall(request.build()).execute()) {
+			if(response.code()==404 || response.code()==405) return null;
+			ResponseBody body = response.body();
+			if(!response.isSuccessful() || body==null)
+				throw new IOException("Unexpected response "+response.code()+" for "+url);
+			T ret = parser.parse(body.byteStream());
+			if(ret instanceof PackageInfo && AbbreviatedMetadataInterceptor.isAbbreviated(body.contentType())) {
+				((PackageInfo)ret).markAbbreviated();
+			}
+			return ret;
+		}
+	}
+
+	@FunctionalInterface
+	private interface Parser<T> {
+		public T parse(InputStream in) throws IOException;
+	}
+}
@@ -0,0 +1,23 @@
+package org.orienteer.jnpm;
+
+import lombok.Value;
+
+/**
+ * Snapshot of statistics of some JNPM cache
+ */
+@Value
+public class CacheStats {
+	private long hits;
+	private long misses;
+	private long evictions;
+	private int size;
+
+	public long getRequests() {
+		return hits + misses;
+	}
+
+	public double getHitRate() {
+		long requests = getRequests();
+		return requests==0?0:(double)hits/requests;
+	}
+}
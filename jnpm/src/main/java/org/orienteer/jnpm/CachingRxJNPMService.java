@@ -0,0 +1,218 @@
+package org.orienteer.jnpm;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.RegistryInfo;
+import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.VersionRange;
+import org.orienteer.jnpm.dm.search.SearchResults;
+import org.orienteer.jnpm.traversal.ITraversalRule;
+import org.orienteer.jnpm.traversal.TraversalContext;
+import org.orienteer.jnpm.traversal.TraversalTree;
+import org.orienteer.jnpm.traversal.TraverseDirection;
+
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * {@link RxJNPMService} which caches packages information in memory on top of actual registry calls.
+ * Concurrent requests for the same package share single HTTP call.
+ */
+class CachingRxJNPMService implements RxJNPMService {
+
+	private static final String RESOLUTION_SUFFIX = "#resolution";
+
+	private final RxJNPMService delegate;
+	private final JNPMSettings settings;
+	private final SingleFlightCache<String, PackageInfo> packageInfoCache;
+	private final SingleFlightCache<String, VersionInfo> versionInfoCache;
+	private final SingleFlightCache<String, Map<String, String>> distTagsCache;
+	private final ResolutionMemo resolutionMemo;
+	private final SingleFlightCache<String, SearchResults> searchCache;
+	private final PackageSearchIndex searchIndex;
+	private final JNPMService owner;
+
+	public CachingRxJNPMService(RxJNPMService delegate, JNPMSettings settings) {
+		this(delegate, settings, new MetadataCaches(settings), null);
+	}
+
+	/**
+	 * @param delegate service to do actual calls to the registry
+	 * @param settings settings of the service
+	 * @param caches caches to use: might be shared with other services of the same registry
+	 * @param owner service to bind traversals to or null to use default {@link JNPMService#instance()}
+	 */
+	CachingRxJNPMService(RxJNPMService delegate, JNPMSettings settings, MetadataCaches caches, JNPMService owner) {
+		this.delegate = delegate;
+		this.settings = settings;
+		this.packageInfoCache = caches.getPackageInfoCache();
+		this.versionInfoCache = caches.getVersionInfoCache();
+		this.distTagsCache = caches.getDistTagsCache();
+		this.resolutionMemo = caches.getResolutionMemo();
+		this.searchCache = caches.getSearchCache();
+		this.searchIndex = caches.getSearchIndex();
+		this.owner = owner;
+	}
+
+	@Override
+	public Single<RegistryInfo> getRegistryInfo() {
+		return delegate.getRegistryInfo();
+	}
+
+	@Override
+	public Maybe<PackageInfo> getPackageInfo(String packageName) {
+		return packageInfoCache.get(packageName, () -> index(delegate.getPackageInfo(packageName)));
+	}
+
+	@Override
+	public Maybe<PackageInfo> getPackageInfoForResolution(String packageName) {
+		if(!settings.isUseResolutionMetadata()) return getPackageInfo(packageName);
+		return packageInfoCache.get(getResolutionKey(packageName),
+									() -> index(delegate.getPackageInfoForResolution(packageName)));
+	}
+
+	private Maybe<PackageInfo> index(Maybe<PackageInfo> packageInfo) {
+		return searchIndex!=null?packageInfo.doOnSuccess(searchIndex::add):packageInfo;
+	}
+
+	String getResolutionKey(String packageName) {
+		return settings.isUseResolutionMetadata()?packageName+RESOLUTION_SUFFIX:packageName;
+	}
+
+	@Override
+	public Maybe<VersionInfo> getVersionInfo(String packageName, String version) {
+		return versionInfoCache.get(packageName+"@"+version, () -> delegate.getVersionInfo(packageName, version));
+	}
+
+	@Override
+	public Maybe<VersionInfo> getVersionInfoForResolution(String packageName, String version) {
+		//Versions documents are not abbreviated, so only parsing profile matters
+		if(settings.getParsingProfile()!=ParsingProfile.RESOLUTION) return getVersionInfo(packageName, version);
+		return versionInfoCache.get(getResolutionKey(packageName+"@"+version),
+									() -> delegate.getVersionInfoForResolution(packageName, version));
+	}
+
+	@Override
+	public Single<SearchResults> search(String text, Integer size, Integer from, Float quality, Float popularity,
+			Float maintenance) {
+		String key = text+"|"+size+"|"+from+"|"+quality+"|"+popularity+"|"+maintenance;
+		return searchCache.get(key, () -> delegate.search(text, size, from, quality, popularity, maintenance).toMaybe())
+							.toSingle();
+	}
+
+	@Override
+	public Maybe<Response<ResponseBody>> downloadFile(String fileUrl) {
+		return delegate.downloadFile(fileUrl);
+	}
+
+	@Override
+	public Maybe<Map<String, String>> getDistTags(String packageName) {
+		return distTagsCache.get(packageName, () -> delegate.getDistTags(packageName));
+	}
+
+	/**
+	 * Resolve version without loading of whole package information if it's not loaded yet:
+	 * exact versions are retrieved by small per-version documents and tags are looked up by dist-tags first.
+	 * Package information is still used for tags if registry doesn't support dist-tags endpoint or doesn't know the tag
+	 * @param packageName name of the package
+	 * @param versionConstraint version constraint to resolve
+	 * @return resolved version or null if package information should be used for resolution
+	 */
+	private Maybe<VersionInfo> resolveDirectly(String packageName, String versionConstraint) {
+		if(packageInfoCache.contains(getResolutionKey(packageName))) return null;
+		VersionRange range = VersionRange.compile(versionConstraint);
+		if(range==null) {
+			return getDistTags(packageName)
+					.onErrorComplete()
+					.flatMap(tags -> {
+						String version = tags.get(versionConstraint);
+						return version!=null?getVersionInfoForResolution(packageName, version):Maybe.<VersionInfo>empty();
+					})
+					.switchIfEmpty(Maybe.defer(() -> resolveByPackageInfo(packageName, versionConstraint)));
+		} else if(range.isExactVersion()) {
+			return getVersionInfoForResolution(packageName, range.getExactVersion());
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public Observable<VersionInfo> retrieveVersions(String packageName, String versionConstraint) {
+		Maybe<VersionInfo> resolved = resolveDirectly(packageName, versionConstraint);
+		if(resolved!=null) return resolved.toObservable();
+		return RxJNPMService.super.retrieveVersions(packageName, versionConstraint);
+	}
+
+	@Override
+	public Maybe<VersionInfo> bestMatch(String packageName, String versionConstraint) {
+		Maybe<VersionInfo> resolved = resolveDirectly(packageName, versionConstraint);
+		return resolved!=null?resolved:resolveByPackageInfo(packageName, versionConstraint);
+	}
+	
+	private Maybe<VersionInfo> resolveByPackageInfo(String packageName, String versionConstraint) {
+		return getPackageInfoForResolution(packageName)
+					.flatMap(p -> {
+						VersionInfo version = resolutionMemo.bestMatch(packageName, p, versionConstraint);
+						return version!=null?Maybe.just(version):Maybe.empty();
+					});
+	}
+
+	@Override
+	public Observable<Resolution> resolveAll(String packageName, Collection<String> versionConstraints) {
+		if(versionConstraints.size()==1) {
+			String versionConstraint = versionConstraints.iterator().next();
+			Maybe<VersionInfo> resolved = resolveDirectly(packageName, versionConstraint);
+			if(resolved!=null) {
+				return resolved.map(v -> new Resolution(packageName, versionConstraint, v))
+								.toSingle(new Resolution(packageName, versionConstraint, null))
+								.onErrorReturn(e -> new Resolution(packageName, versionConstraint, null, e))
+								.toObservable();
+			}
+		}
+		return getPackageInfoForResolution(packageName)
+					.flatMapObservable(p -> Observable.fromIterable(versionConstraints)
+							.map(c -> new Resolution(packageName, c, resolutionMemo.bestMatch(packageName, p, c))))
+					.switchIfEmpty(Observable.fromIterable(versionConstraints)
+							.map(c -> new Resolution(packageName, c, null)))
+					.onErrorResumeNext((Throwable e) -> Observable.fromIterable(versionConstraints)
+							.map(c -> new Resolution(packageName, c, null, e)));
+	}
+
+	@Override
+	public TraversalContext newTraversalContext(TraverseDirection direction, ITraversalRule rule, VersionInfo... roots) {
+		return new TraversalContext(owner, direction, rule, roots);
+	}
+
+	public SingleFlightCache<String, PackageInfo> getPackageInfoCache() {
+		return packageInfoCache;
+	}
+
+	public SingleFlightCache<String, VersionInfo> getVersionInfoCache() {
+		return versionInfoCache;
+	}
+
+	public SingleFlightCache<String, Map<String, String>> getDistTagsCache() {
+		return distTagsCache;
+	}
+
+	public ResolutionMemo getResolutionMemo() {
+		return resolutionMemo;
+	}
+
+	public SingleFlightCache<String, SearchResults> getSearchCache() {
+		return searchCache;
+	}
+
+	/**
+	 * @return local index of retrieved packages or null if it's disabled
+	 */
+	public PackageSearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+}
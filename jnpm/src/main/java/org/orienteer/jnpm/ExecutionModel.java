@@ -0,0 +1,19 @@
+package org.orienteer.jnpm;
+
+/**
+ * Models of execution of asynchronous work in JNPM: handling of metadata, downloads and extraction
+ */
+public enum ExecutionModel {
+	/**
+	 * Use {@link io.reactivex.schedulers.Schedulers#io()}: number of threads is not limited
+	 */
+	IO,
+	/**
+	 * Use fixed pools of threads sized by settings
+	 */
+	BOUNDED,
+	/**
+	 * Use virtual threads if JVM supports them (JDK 21+). Falls back to {@link #BOUNDED} otherwise
+	 */
+	VIRTUAL_THREADS
+}
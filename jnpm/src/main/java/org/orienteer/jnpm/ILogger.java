@@ -30,6 +30,7 @@ public interface ILogger {
 	public void log(String message, Throwable exc);
 	
 	public static ILogger getLogger() {
-		return JNPMService.instance().getSettings().getLogger();
+		//Standalone services can be used without configuring of the default one
+		return JNPMService.isConfigured()?JNPMService.instance().getSettings().getLogger():DEFAULT;
 	}
 }
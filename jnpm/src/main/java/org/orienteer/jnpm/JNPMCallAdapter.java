@@ -3,7 +3,12 @@ package org.orienteer.jnpm;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
 import retrofit2.Call;
 import retrofit2.CallAdapter;
 import retrofit2.HttpException;
@@ -11,17 +16,25 @@ import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 
 /**
- * {@link CallAdapter} to workaround NPM registry error codes
+ * {@link CallAdapter} to workaround NPM registry error codes.
+ * Results of asynchronous calls are delivered on provided {@link Scheduler}, 
+ * so OkHttp dispatcher threads are not blocked by downstream processing.
  * @param <R> return type
  */
 class JNPMCallAdapter<R> implements CallAdapter<R, Object> {
 	
 	private final CallAdapter<?, ?> delegate;
 	private final Class<?> returnClass;
+	private final Scheduler scheduler;
 	
 	public JNPMCallAdapter(CallAdapter<?, ?> delegate, Class<?> returnClass) {
+		this(delegate, returnClass, null);
+	}
+	
+	public JNPMCallAdapter(CallAdapter<?, ?> delegate, Class<?> returnClass, Scheduler scheduler) {
 		this.delegate = delegate;
 		this.returnClass = returnClass;
+		this.scheduler = scheduler;
 	}
 
 	@Override
@@ -33,6 +46,7 @@ class JNPMCallAdapter<R> implements CallAdapter<R, Object> {
 	@Override
 	public Object adapt(Call<R> call) {
 		Object ret = delegate.adapt((Call)call);
+		if(scheduler!=null) ret = observeOn(ret);
 		if(ret instanceof Maybe) {
 			ret = ((Maybe<?>)ret)
 					.onErrorComplete(t -> t instanceof HttpException 
@@ -41,23 +55,43 @@ class JNPMCallAdapter<R> implements CallAdapter<R, Object> {
 		return ret;
 	}
 	
+	private Object observeOn(Object ret) {
+		if(ret instanceof Maybe) return ((Maybe<?>)ret).observeOn(scheduler);
+		else if(ret instanceof Single) return ((Single<?>)ret).observeOn(scheduler);
+		else if(ret instanceof Observable) return ((Observable<?>)ret).observeOn(scheduler);
+		else if(ret instanceof Flowable) return ((Flowable<?>)ret).observeOn(scheduler);
+		else if(ret instanceof Completable) return ((Completable)ret).observeOn(scheduler);
+		else return ret;
+	}
+	
 	static class JNPMCallAdapterFactory extends Factory {
 		
 		private RxJava2CallAdapterFactory delegate;
+		private Scheduler scheduler;
 		
-		private JNPMCallAdapterFactory(RxJava2CallAdapterFactory delegate) {
+		private JNPMCallAdapterFactory(RxJava2CallAdapterFactory delegate, Scheduler scheduler) {
 			this.delegate = delegate;
+			this.scheduler = scheduler;
 		}
 		
 		public static JNPMCallAdapterFactory create(RxJava2CallAdapterFactory delegate) {
-			return new JNPMCallAdapterFactory(delegate);
+			return create(delegate, null);
+		}
+		
+		/**
+		 * @param delegate actual factory of call adapters
+		 * @param scheduler scheduler to deliver results on or null to keep threads of the delegate
+		 * @return factory of {@link JNPMCallAdapter}
+		 */
+		public static JNPMCallAdapterFactory create(RxJava2CallAdapterFactory delegate, Scheduler scheduler) {
+			return new JNPMCallAdapterFactory(delegate, scheduler);
 		}
 
 		@Override
 		public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
 			CallAdapter<?, ?> callAdapter = delegate.get(returnType, annotations, retrofit);
 			if(callAdapter==null) return null;
-			return callAdapter==null?null:new JNPMCallAdapter<Object>(callAdapter, getRawType(returnType));
+			return callAdapter==null?null:new JNPMCallAdapter<Object>(callAdapter, getRawType(returnType), scheduler);
 		}
 		
 	}
@@ -0,0 +1,82 @@
+package org.orienteer.jnpm;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.VersionInfo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+/**
+ * {@link Converter.Factory} to convert NPM registry responses: delegates actual work to Jackson
+ * and post-process results according to response specifics
+ */
+class JNPMConverterFactory extends Converter.Factory {
+
+	private final JacksonConverterFactory delegate;
+	private final ResolutionMetadataParser resolutionParser;
+	private final ParsingProfile resolutionProfile;
+
+	private JNPMConverterFactory(ObjectMapper mapper, ParsingProfile resolutionProfile) {
+		this.delegate = JacksonConverterFactory.create(mapper);
+		this.resolutionParser = new ResolutionMetadataParser(mapper.getFactory());
+		this.resolutionProfile = resolutionProfile;
+	}
+
+	public static JNPMConverterFactory create(ObjectMapper mapper) {
+		return create(mapper, ParsingProfile.FULL);
+	}
+
+	public static JNPMConverterFactory create(ObjectMapper mapper, ParsingProfile resolutionProfile) {
+		return new JNPMConverterFactory(mapper, resolutionProfile);
+	}
+
+	@Override
+	public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+			Retrofit retrofit) {
+		if(resolutionProfile==ParsingProfile.RESOLUTION && isResolutionCall(annotations)) {
+			if(PackageInfo.class.equals(type)) {
+				return body -> {
+					try(ResponseBody toClose = body) {
+						return resolutionParser.parsePackageInfo(body.byteStream());
+					}
+				};
+			} else if(VersionInfo.class.equals(type)) {
+				return body -> {
+					try(ResponseBody toClose = body) {
+						return resolutionParser.parseVersionInfo(body.byteStream());
+					}
+				};
+			}
+		}
+		Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+		if(converter==null || !PackageInfo.class.equals(type)) return converter;
+		return body -> {
+			boolean abbreviated = AbbreviatedMetadataInterceptor.isAbbreviated(body.contentType());
+			PackageInfo packageInfo = (PackageInfo) converter.convert(body);
+			if(packageInfo!=null && abbreviated) packageInfo.markAbbreviated();
+			return packageInfo;
+		};
+	}
+
+	private static boolean isResolutionCall(Annotation[] annotations) {
+		for (Annotation annotation : annotations) {
+			if(annotation instanceof ResolutionCall) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+			Annotation[] methodAnnotations, Retrofit retrofit) {
+		return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+	}
+
+}
@@ -0,0 +1,142 @@
+package org.orienteer.jnpm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Schedulers used by JNPM for handling of metadata, downloads and extraction of packages.
+ * Schedulers explicitly provided in {@link JNPMSettings} have priority over {@link ExecutionModel}.
+ */
+public class JNPMSchedulers {
+
+	private final Scheduler metadata;
+	private final Scheduler download;
+	private final Scheduler extraction;
+	private final ExecutionModel executionModel;
+	private final List<ExecutorService> executors = new ArrayList<>();
+
+	public JNPMSchedulers(JNPMSettings settings) {
+		ExecutionModel model = settings.getExecutionModel();
+		if(model==ExecutionModel.VIRTUAL_THREADS && !isVirtualThreadsSupported()) {
+			settings.getLogger().log("Virtual threads are not supported by this JVM: bounded pools are used instead");
+			model = ExecutionModel.BOUNDED;
+		}
+		this.executionModel = model;
+		this.metadata = settings.getMetadataScheduler()!=null
+							?settings.getMetadataScheduler()
+							:createScheduler("jnpm-metadata", settings.getMetadataThreads());
+		this.download = settings.getDownloadScheduler()!=null
+							?settings.getDownloadScheduler()
+							:createScheduler("jnpm-download", settings.getDownloadThreads());
+		this.extraction = settings.getExtractionScheduler()!=null
+							?settings.getExtractionScheduler()
+							:createScheduler("jnpm-extraction", settings.getExtractionThreads());
+	}
+
+	private Scheduler createScheduler(String name, int threads) {
+		switch (executionModel) {
+			case BOUNDED:
+				return register(Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory(name)));
+			case VIRTUAL_THREADS:
+				return register(newVirtualThreadPerTaskExecutor());
+			case IO:
+			default:
+				return Schedulers.io();
+		}
+	}
+
+	private Scheduler register(ExecutorService executor) {
+		executors.add(executor);
+		return Schedulers.from(executor);
+	}
+
+	/**
+	 * @return true if JVM supports virtual threads
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		//Reflection is used to keep compatibility with Java 8
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Can't create executor with virtual threads", e);
+		}
+	}
+
+	/**
+	 * @return scheduler to handle results of registry calls on
+	 */
+	public Scheduler getMetadata() {
+		return metadata;
+	}
+
+	/**
+	 * @return scheduler to download tarballs on
+	 */
+	public Scheduler getDownload() {
+		return download;
+	}
+
+	/**
+	 * @return scheduler to extract tarballs on
+	 */
+	public Scheduler getExtraction() {
+		return extraction;
+	}
+
+	/**
+	 * @return execution model actually used for not explicitly provided schedulers
+	 */
+	public ExecutionModel getExecutionModel() {
+		return executionModel;
+	}
+
+	/**
+	 * Shutdown executors created by JNPM. Explicitly provided schedulers are not affected
+	 */
+	public void shutdown() {
+		for (ExecutorService executor : executors) executor.shutdown();
+	}
+
+	/**
+	 * @return true if executors created by JNPM were shutdown
+	 */
+	public boolean isShutdown() {
+		for (ExecutorService executor : executors) if(!executor.isShutdown()) return false;
+		return true;
+	}
+
+	/**
+	 * Factory of named daemon threads
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix+"-"+counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -1,22 +1,29 @@
 package org.orienteer.jnpm;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.orienteer.jnpm.JNPMCallAdapter.JNPMCallAdapterFactory;
 import org.orienteer.jnpm.dm.PackageInfo;
 import org.orienteer.jnpm.dm.RegistryInfo;
 import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.search.SearchResultPackage;
 import org.orienteer.jnpm.dm.search.SearchResults;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import io.reactivex.schedulers.Schedulers;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.ConnectionPool;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
@@ -27,45 +34,119 @@ import okhttp3.logging.HttpLoggingInterceptor.Logger;
 import okhttp3.Interceptor.Chain;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
-import retrofit2.converter.jackson.JacksonConverterFactory;
 
 /**
- * Set of synchronous API to access NPM. Main entry for any code which use JNPM
+ * Set of synchronous API to access NPM. Main entry for any code which use JNPM.
+ * Services created by {@link #create(JNPMSettings)} should be closed when they are not needed anymore
  */
-public class JNPMService 
+public class JNPMService implements Closeable
 {
 	private static JNPMService instance;
 	
 	private JNPMSettings settings;
 	private RxJNPMService rxService;
+	private BlockingJNPMClient blockingClient;
+	private SingleFlightCache<String, PackageInfo> packageInfoCache;
+	private ResolutionMemo resolutionMemo;
+	private PackageSearchIndex searchIndex;
+	private JNPMSchedulers schedulers;
+	private Cache httpCache;
+	private OkHttpClient httpClient;
+	private Map<String, OkHttpClient> scopedHttpClients = new HashMap<>();
+	private AtomicBoolean closed = new AtomicBoolean();
 	
-	private JNPMService(JNPMSettings settings) {
+	private JNPMService(JNPMSettings settings, boolean standalone) {
 		this.settings = settings;
-		OkHttpClient client = new OkHttpClient.Builder()
-	            .connectTimeout(30, TimeUnit.SECONDS)
-	            .readTimeout(2,TimeUnit.MINUTES)
-	            .writeTimeout(2,  TimeUnit.MINUTES)
-//	            .cache(cache)
-	            .addInterceptor(new AuthorizationInterceptor(settings))
-	            .addInterceptor(new HttpLoggingInterceptor(m->settings.getLogger().log(m))
-	            					.setLevel(settings.getHttpLoggerLevel()))
-	            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
-	            .protocols(Arrays.asList(Protocol.HTTP_1_1))
-	            .build();
-		
-	    
+		httpCache = SharedResources.getHttpCache(settings);
 		ObjectMapper mapper = new ObjectMapper();
 		mapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
 		mapper.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true);
+		schedulers = new JNPMSchedulers(settings);
+		httpClient = createHttpClient(settings, httpCache);
+		RxJNPMService registryService = createRegistryService(settings, httpClient, mapper, schedulers);
+		if(settings.isUseScopedRegistries()) {
+			ScopedRxJNPMService scopedService = new ScopedRxJNPMService(registryService);
+			for (ScopedRegistry registry : settings.getScopedRegistries()) {
+				//Each registry has own connections pool, dispatcher and credentials
+				JNPMSettings registrySettings = settings.toBuilder()
+												.registryUrl(registry.getRegistryUrl())
+												.username(registry.getUsername())
+												.password(registry.getPassword())
+												.mirrorUrls(Collections.emptyList())
+												.build();
+				OkHttpClient registryClient = createHttpClient(registrySettings, httpCache);
+				scopedHttpClients.put(registry.getScope(), registryClient);
+				scopedService.addScope(registry.getScope(), registry.getRegistryUrl(), 
+										createRegistryService(registrySettings, registryClient, mapper, schedulers));
+			}
+			registryService = scopedService;
+		}
+		//Standalone services bind traversals to themselves, default one is looked up through instance()
+		CachingRxJNPMService cachingService = new CachingRxJNPMService(registryService, settings, 
+												SharedResources.getMetadataCaches(settings), standalone?this:null);
+		packageInfoCache = cachingService.getPackageInfoCache();
+		resolutionMemo = cachingService.getResolutionMemo();
+		searchIndex = cachingService.getSearchIndex();
+		rxService = cachingService;
+		blockingClient = new BlockingJNPMClient(settings, this::getHttpClient, mapper, cachingService);
+	}
+	
+	private static OkHttpClient createHttpClient(JNPMSettings settings, Cache httpCache) {
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(settings.getMaxRequests());
+		dispatcher.setMaxRequestsPerHost(settings.getMaxRequestsPerHost());
+		OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder()
+	            .connectTimeout(settings.getConnectTimeout(), TimeUnit.SECONDS)
+	            .readTimeout(settings.getReadTimeout(), TimeUnit.SECONDS)
+	            .writeTimeout(settings.getWriteTimeout(), TimeUnit.SECONDS)
+	            .cache(httpCache);
+		if(httpCache!=null && !settings.isUseCache()) {
+			//Forced run should not be served stale metadata by the persistent cache
+			clientBuilder.addInterceptor(chain -> chain.request().header("Cache-Control")!=null
+											?chain.proceed(chain.request())
+											:chain.proceed(chain.request().newBuilder()
+															.cacheControl(CacheControl.FORCE_NETWORK).build()));
+		}
+		if(settings.getMaxRetries()>0) clientBuilder.addInterceptor(new RetryInterceptor(settings));
+		if(settings.isAdaptiveConcurrency()) clientBuilder.addNetworkInterceptor(new AdaptiveConcurrencyInterceptor(settings));
+		clientBuilder.addInterceptor(new AuthorizationInterceptor(settings));
+		if(settings.isUseAbbreviatedMetadata()) {
+			clientBuilder.addInterceptor(new AbbreviatedMetadataInterceptor())
+						 .addNetworkInterceptor(new AbbreviatedMetadataInterceptor.CacheKeyMarkerRemover());
+		}
+		OkHttpClient httpClient = clientBuilder
+	            .addInterceptor(new HttpLoggingInterceptor(m->settings.getLogger().log(m))
+	            					.setLevel(settings.getHttpLoggerLevel()))
+	            .dispatcher(dispatcher)
+	            .connectionPool(SharedResources.getConnectionPool(settings))
+	            //HTTP/2 is negotiated through TLS ALPN, so plain HTTP registries keep using HTTP/1.1
+	            .protocols(settings.isUseHttp2()?Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+	            								 :Arrays.asList(Protocol.HTTP_1_1))
+	            .build();
+		if(settings.isUseMirrors()) {
+			RegistryMirrorsInterceptor mirrorsInterceptor = new RegistryMirrorsInterceptor(settings);
+			mirrorsInterceptor.setClient(httpClient);
+			//Routing client only selects mirrors: caching, retries and authorization are done for each attempt
+			OkHttpClient.Builder routingBuilder = httpClient.newBuilder().cache(null);
+			routingBuilder.interceptors().clear();
+			routingBuilder.networkInterceptors().clear();
+			httpClient = routingBuilder.addInterceptor(mirrorsInterceptor).build();
+		}
+		return httpClient;
+	}
+	
+	private static RxJNPMService createRegistryService(JNPMSettings settings, OkHttpClient httpClient, 
+														ObjectMapper mapper, JNPMSchedulers schedulers) {
 		Retrofit retrofit = new Retrofit.Builder()
 			    .baseUrl(settings.getRegistryUrl())
-			    .client(client)
-			    .addConverterFactory(JacksonConverterFactory.create(mapper))
+			    .client(httpClient)
+			    .addConverterFactory(JNPMConverterFactory.create(mapper, settings.getParsingProfile()))
+			    //Calls are enqueued to OkHttp dispatcher to respect limits of concurrent requests
 			    .addCallAdapterFactory(JNPMCallAdapterFactory
-			    						.create(RxJava2CallAdapterFactory.createWithScheduler(Schedulers.io())))
+			    						.create(RxJava2CallAdapterFactory.createAsync(), schedulers.getMetadata()))
 //			    .addCallAdapterFactory(RxJava2CallAdapterFactory.createWithScheduler(Schedulers.io()))
 			    .build();
-		rxService = retrofit.create(RxJNPMService.class);
+		return retrofit.create(RxJNPMService.class);
 	}
 	
 	public static JNPMService instance() {
@@ -91,9 +172,10 @@ public class JNPMService
 	public static synchronized JNPMService configure(JNPMSettings settings) {
 		if(isConfigured()) throw new IllegalStateException("You can't configure JNPM twise: it's already initiated");
 		try {
+			settings.validate();
 			settings.createAllDirectories();
 			settings.getLogger().log("Settings: "+settings);
-			instance = new JNPMService(settings);
+			instance = new JNPMService(settings, false);
 			return instance;
 		} catch (Exception e) {
 			settings.getLogger().log("Can't configure JNPM due to problems with settings", e);
@@ -101,6 +183,21 @@ public class JNPMService
 		}
 	}
 	
+	/**
+	 * Create independent service which doesn't affect default {@link #instance()}.
+	 * Connections pools, HTTP cache and packages information are shared with other services where settings allow it
+	 * @param settings settings for the service
+	 * @return new service
+	 * @throws IOException if required directories can't be created
+	 * @throws IllegalArgumentException if settings are not valid
+	 */
+	public static JNPMService create(JNPMSettings settings) throws IOException {
+		settings.validate();
+		settings.createAllDirectories();
+		settings.getLogger().log("Settings: "+settings);
+		return new JNPMService(settings, true);
+	}
+	
 	public JNPMSettings getSettings() {
 		return settings;
 	}
@@ -109,6 +206,66 @@ public class JNPMService
 		return rxService;
 	}
 	
+	/**
+	 * @return synchronous client which executes calls on the calling thread: suitable for virtual threads
+	 */
+	public BlockingJNPMClient getBlockingClient() {
+		return blockingClient;
+	}
+	
+	/**
+	 * @return in-memory cache of packages information shared by all calls of this service
+	 */
+	public SingleFlightCache<String, PackageInfo> getPackageInfoCache() {
+		return packageInfoCache;
+	}
+	
+	/**
+	 * @return memo of versions resolutions shared by all calls of this service
+	 */
+	public ResolutionMemo getResolutionMemo() {
+		return resolutionMemo;
+	}
+	
+	/**
+	 * @return local index of packages retrieved by this service or null if
+	 * {@link JNPMSettings#isUseLocalSearchIndex()} is disabled
+	 */
+	public PackageSearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+	
+	/**
+	 * @return schedulers for handling of metadata, downloads and extraction
+	 */
+	public JNPMSchedulers getSchedulers() {
+		return schedulers;
+	}
+	
+	/**
+	 * @return HTTP client used for all calls to the registry
+	 */
+	public OkHttpClient getHttpClient() {
+		return httpClient;
+	}
+	
+	/**
+	 * @param packageName name of a package
+	 * @return HTTP client used for calls related to the package: client of the registry for its scope or default one
+	 */
+	public OkHttpClient getHttpClient(String packageName) {
+		String scope = ScopedRegistry.getScopeOf(packageName);
+		OkHttpClient client = scope!=null?scopedHttpClients.get(scope):null;
+		return client!=null?client:httpClient;
+	}
+	
+	/**
+	 * @return persistent HTTP cache for registry metadata or null if it's disabled
+	 */
+	public Cache getHttpCache() {
+		return httpCache;
+	}
+	
 	public RegistryInfo getRegistryInfo() {
 		return rxService.getRegistryInfo().blockingGet();
 	}
@@ -139,6 +296,14 @@ public class JNPMService
     	return rxService.bestMatch(expression).blockingGet();
     }
     
+    public List<Resolution> resolveAll(Map<String, String> dependencies) {
+    	return rxService.resolveAll(dependencies).toList().blockingGet();
+    }
+    
+    public List<Resolution> resolveAll(String... expressions) {
+    	return rxService.resolveAll(expressions).toList().blockingGet();
+    }
+    
     public SearchResults search(String text, Integer size, Integer from,
 									Float quality, Float popularity, Float maintenance) {
     	return rxService.search(text, size, from, quality, popularity, maintenance).blockingGet();
@@ -155,4 +320,36 @@ public class JNPMService
 	public SearchResults search(String text) {
 		return search(text, null);
 	}
+	
+	/**
+	 * Search among packages already retrieved by JNPM without network access
+	 * @param text text to search for: every word is treated as a prefix
+	 * @param limit maximal number of packages to return
+	 * @return found packages
+	 */
+	public List<SearchResultPackage> searchLocally(String text, int limit) {
+		if(searchIndex==null) throw new IllegalStateException("Local search index is disabled: enable it in settings");
+		return searchIndex.search(text, limit);
+	}
+	
+	/**
+	 * @param text text to search for
+	 * @param pageSize number of packages to request per page
+	 * @return iterable over all found packages which retrieves pages lazily
+	 */
+	public Iterable<SearchResultPackage> searchAll(String text, int pageSize) {
+		return rxService.searchAll(text, pageSize).blockingIterable(pageSize);
+	}
+	
+	/**
+	 * Shutdown schedulers and dispatchers of this service: calls in progress are completed, but new ones are rejected.
+	 * Connections pools, HTTP cache and packages information are shared, so they are kept for other services
+	 */
+	@Override
+	public void close() {
+		if(!closed.compareAndSet(false, true)) return;
+		schedulers.shutdown();
+		httpClient.dispatcher().executorService().shutdown();
+		for (OkHttpClient client : scopedHttpClients.values()) client.dispatcher().executorService().shutdown();
+	}
 }
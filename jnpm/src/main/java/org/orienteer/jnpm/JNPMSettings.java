@@ -4,7 +4,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import io.reactivex.Scheduler;
 import lombok.Builder;
 import lombok.ToString;
 import lombok.Value;
@@ -23,12 +27,49 @@ public class JNPMSettings {
 	@Builder.Default private Path homeDirectory = Paths.get(System.getProperty("user.home"), ".jnpm");
 	@Builder.Default private boolean validateSignature = true;
 	@Builder.Default private boolean useCache = true;
+	@Builder.Default private boolean useAbbreviatedMetadata = false;
+	@Builder.Default private ParsingProfile parsingProfile = ParsingProfile.FULL;
+	@Builder.Default private int packageInfoCacheSize = 500;
+	@Builder.Default private long packageInfoCacheTTL = 300; //In seconds
+	@Builder.Default private long distTagsCacheTTL = 60; //In seconds
+	@Builder.Default private int resolutionMemoSize = 1000; //In packages
+	@Builder.Default private int searchCacheSize = 100;
+	@Builder.Default private long searchCacheTTL = 60; //In seconds
+	@Builder.Default private boolean useLocalSearchIndex = false;
+	@Builder.Default private int searchIndexSize = PackageSearchIndex.DEFAULT_MAX_PACKAGES;
+	@Builder.Default private long httpCacheSize = 100L * 1024 * 1024; //In bytes
+	@Builder.Default private boolean useHttp2 = true;
+	@Builder.Default private int maxIdleConnections = 16;
+	@Builder.Default private long keepAliveDuration = 300; //In seconds
+	@Builder.Default private int maxRequests = 64;
+	@Builder.Default private int maxRequestsPerHost = 16;
+	@Builder.Default private long connectTimeout = 30; //In seconds
+	@Builder.Default private long readTimeout = 120; //In seconds
+	@Builder.Default private long writeTimeout = 120; //In seconds
+	@Builder.Default private int maxRetries = 0;
+	@Builder.Default private long retryBackoff = 500; //In milliseconds
+	@Builder.Default private long maxRetryBackoff = 30000; //In milliseconds
+	@Builder.Default private boolean adaptiveConcurrency = false;
+	@Builder.Default private List<String> mirrorUrls = Collections.emptyList();
+	@Builder.Default private MirrorPolicy mirrorPolicy = MirrorPolicy.FAILOVER;
+	@Builder.Default private long hedgeDelay = 1000; //In milliseconds, until enough latencies are observed
+	@Builder.Default private int hedgePercentile = 95;
+	@Builder.Default private List<ScopedRegistry> scopedRegistries = Collections.emptyList();
+	@Builder.Default private ExecutionModel executionModel = ExecutionModel.IO;
+	@Builder.Default private int metadataThreads = 16;
+	@Builder.Default private int downloadThreads = 8;
+	@Builder.Default private int extractionThreads = Runtime.getRuntime().availableProcessors();
+	@Builder.Default private int traversalPrefetch = 64;
 	@Builder.Default private ILogger logger = ILogger.DEFAULT;
 	@Builder.Default private Level httpLoggerLevel = Level.NONE;
 	private String username;
 	@ToString.Exclude private String password;
 	private Path downloadDirectory;
 	private Path installDirectory;
+	private Path httpCacheDirectory;
+	private Scheduler metadataScheduler;
+	private Scheduler downloadScheduler;
+	private Scheduler extractionScheduler;
 	
 	public Path getDownloadDirectory() {
 		return downloadDirectory!=null?downloadDirectory:getHomeDirectory().resolve("cache");
@@ -38,9 +79,79 @@ public class JNPMSettings {
 		return installDirectory!=null?installDirectory:getHomeDirectory();
 	}
 	
+	public Path getHttpCacheDirectory() {
+		return httpCacheDirectory!=null?httpCacheDirectory:getHomeDirectory().resolve("http-cache");
+	}
+	
+	public boolean isUseMirrors() {
+		return mirrorUrls!=null && !mirrorUrls.isEmpty();
+	}
+	
+	public boolean isUseScopedRegistries() {
+		return scopedRegistries!=null && !scopedRegistries.isEmpty();
+	}
+	
+	/**
+	 * @param other settings to compare with
+	 * @return true if both settings point to the same registries with the same credentials
+	 * and request the same metadata, so packages information can be shared
+	 */
+	public boolean isSameRegistry(JNPMSettings other) {
+		return other!=null && getRegistryIdentity().equals(other.getRegistryIdentity());
+	}
+	
+	List<Object> getRegistryIdentity() {
+		return Arrays.asList(registryUrl, username, password, mirrorUrls, scopedRegistries,
+							 useAbbreviatedMetadata, parsingProfile, useLocalSearchIndex);
+	}
+	
+	/**
+	 * @return true if lighter metadata should be requested or parsed for versions resolution
+	 */
+	public boolean isUseResolutionMetadata() {
+		return useAbbreviatedMetadata || parsingProfile==ParsingProfile.RESOLUTION;
+	}
+	
+	public boolean isUseHttpCache() {
+		return httpCacheSize>0;
+	}
+	
+	/**
+	 * Check that settings values are consistent
+	 * @throws IllegalArgumentException if some value is not acceptable
+	 */
+	public void validate() {
+		checkPositive("Traversal prefetch", traversalPrefetch);
+		checkPositive("Max requests", maxRequests);
+		checkPositive("Max requests per host", maxRequestsPerHost);
+		checkNotNegative("Max retries", maxRetries);
+		checkNotNegative("Retry backoff", retryBackoff);
+		checkNotNegative("Max retry backoff", maxRetryBackoff);
+		checkNotNegative("Package info cache size", packageInfoCacheSize);
+		checkNotNegative("Package info cache TTL", packageInfoCacheTTL);
+		checkNotNegative("Dist tags cache TTL", distTagsCacheTTL);
+		checkNotNegative("Resolution memo size", resolutionMemoSize);
+		checkNotNegative("Search cache size", searchCacheSize);
+		checkNotNegative("Search cache TTL", searchCacheTTL);
+		checkNotNegative("Search index size", searchIndexSize);
+		checkNotNegative("HTTP cache size", httpCacheSize);
+		checkNotNegative("Hedge delay", hedgeDelay);
+		if(hedgePercentile<0 || hedgePercentile>100)
+			throw new IllegalArgumentException("Hedge percentile should be between 0 and 100, but was "+hedgePercentile);
+	}
+	
+	private static void checkPositive(String name, long value) {
+		if(value<=0) throw new IllegalArgumentException(name+" should be positive, but was "+value);
+	}
+	
+	private static void checkNotNegative(String name, long value) {
+		if(value<0) throw new IllegalArgumentException(name+" should not be negative, but was "+value);
+	}
+	
 	public void createAllDirectories() throws IOException {
 		Files.createDirectories(getHomeDirectory());
 		Files.createDirectories(getDownloadDirectory());
 		Files.createDirectories(getInstallDirectory());
+		if(isUseHttpCache()) Files.createDirectories(getHttpCacheDirectory());
 	}
 }
@@ -11,6 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -22,6 +23,7 @@ import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.io.IOUtils;
 import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.VersionRange;
 import org.orienteer.jnpm.traversal.TraversalTree;
 
 import com.vdurmont.semver4j.Requirement;
@@ -88,16 +90,13 @@ public final class JNPMUtils {
 	}
 	
 	/**
-	 * Convert version constraint to {@link Requirement}
+	 * Convert version constraint to {@link Requirement}. Results are cached: see {@link VersionRange}
 	 * @param versionConstraint - text representation of version constraint
-	 * @return null if version constraint is invalid or actual predicate
+	 * @return null if version constraint is invalid or a tag, otherwise actual predicate
 	 */
 	public static Requirement toVersionPredicate(final String versionConstraint) {
-		try {
-			return Requirement.buildNPM(versionConstraint);
-		} catch (SemverException e) {
-			return null;
-		}
+		VersionRange range = VersionRange.compile(versionConstraint);
+		return range!=null?range.getRequirement():null;
 	}
 	
 	/**
@@ -230,6 +229,9 @@ public final class JNPMUtils {
 	
 	private static final Map<String, String> MIME_TYPES_MAPPING = new HashMap<>();
 	
+	private static final int MAX_VALID_VERSIONS_CACHE_SIZE = 10000;
+	private static final Map<String, Boolean> VALID_VERSIONS = new ConcurrentHashMap<>();
+	
 	{
 		MIME_TYPES_MAPPING.put("json", "application/json");
 		MIME_TYPES_MAPPING.put("js", "text/javascript");
@@ -297,11 +299,17 @@ public final class JNPMUtils {
 	 * @return true - if Semver can be create from specified version
 	 */
 	public static boolean isValidVersion(String versionExpression) {
-		try {
-			new Semver(versionExpression, SemverType.NPM);
-			return true;
-		} catch (SemverException e) {
-			return false;
+		Boolean ret = VALID_VERSIONS.get(versionExpression);
+		if(ret==null) {
+			try {
+				new Semver(versionExpression, SemverType.NPM);
+				ret = true;
+			} catch (SemverException e) {
+				ret = false;
+			}
+			if(VALID_VERSIONS.size()>=MAX_VALID_VERSIONS_CACHE_SIZE) VALID_VERSIONS.clear();
+			VALID_VERSIONS.put(versionExpression, ret);
 		}
+		return ret;
 	}
 }
@@ -0,0 +1,37 @@
+package org.orienteer.jnpm;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.search.SearchResults;
+
+import lombok.Getter;
+
+/**
+ * In-memory caches of registry metadata. Can be shared by services of the same registry
+ */
+@Getter
+class MetadataCaches {
+
+	private final SingleFlightCache<String, PackageInfo> packageInfoCache;
+	private final SingleFlightCache<String, VersionInfo> versionInfoCache;
+	private final SingleFlightCache<String, Map<String, String>> distTagsCache;
+	private final ResolutionMemo resolutionMemo;
+	private final SingleFlightCache<String, SearchResults> searchCache;
+	private final PackageSearchIndex searchIndex;
+
+	public MetadataCaches(JNPMSettings settings) {
+		this.packageInfoCache = new SingleFlightCache<>(settings.getPackageInfoCacheSize(),
+														settings.getPackageInfoCacheTTL(), TimeUnit.SECONDS);
+		//Versions documents are immutable, so they don't expire
+		this.versionInfoCache = new SingleFlightCache<>(settings.getPackageInfoCacheSize(), 0, TimeUnit.SECONDS);
+		this.distTagsCache = new SingleFlightCache<>(settings.getPackageInfoCacheSize(),
+														settings.getDistTagsCacheTTL(), TimeUnit.SECONDS);
+		this.resolutionMemo = new ResolutionMemo(settings.getResolutionMemoSize());
+		this.searchCache = new SingleFlightCache<>(settings.getSearchCacheSize(),
+														settings.getSearchCacheTTL(), TimeUnit.SECONDS);
+		this.searchIndex = settings.isUseLocalSearchIndex()?new PackageSearchIndex(settings.getSearchIndexSize()):null;
+	}
+}
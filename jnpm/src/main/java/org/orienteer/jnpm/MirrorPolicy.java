@@ -0,0 +1,20 @@
+package org.orienteer.jnpm;
+
+/**
+ * Policies of selection of a registry if mirrors are configured
+ */
+public enum MirrorPolicy {
+	/**
+	 * Use registries in configured order: next one is used only if previous one failed
+	 */
+	FAILOVER,
+	/**
+	 * Prefer registry with the lowest observed latency and failover to others
+	 */
+	LATENCY,
+	/**
+	 * Send request to the fastest registry and, if response is not received within usual time for this registry,
+	 * send duplicate to the next one: the first received response wins and another call is cancelled
+	 */
+	HEDGED
+}
@@ -0,0 +1,170 @@
+package org.orienteer.jnpm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.search.SearchResultPackage;
+
+/**
+ * Local inverted index over names, descriptions and keywords of packages retrieved by JNPM.
+ * Answers prefix queries (autocomplete) without network access.
+ * Only packages information loaded into memory is indexed: packages resolved by per-version documents are not covered
+ * and abbreviated or {@link ParsingProfile#RESOLUTION} metadata contributes names only.
+ * Number of packages is bounded: the least recently indexed ones are dropped first.
+ */
+public class PackageSearchIndex {
+
+	public static final int DEFAULT_MAX_PACKAGES = 10000;
+
+	private final int maxPackages;
+	private final LinkedHashMap<String, Boolean> recentlyIndexed = new LinkedHashMap<>();
+	private final NavigableMap<String, Set<String>> tokens = new ConcurrentSkipListMap<>();
+	private final Map<String, SearchResultPackage> packages = new ConcurrentHashMap<>();
+	private final Map<String, Set<String>> tokensOfPackages = new ConcurrentHashMap<>();
+
+	public PackageSearchIndex() {
+		this(DEFAULT_MAX_PACKAGES);
+	}
+
+	/**
+	 * @param maxPackages maximal number of packages to keep in the index
+	 */
+	public PackageSearchIndex(int maxPackages) {
+		this.maxPackages = Math.max(1, maxPackages);
+	}
+
+	/**
+	 * Add or update package in the index
+	 * @param packageInfo package to index
+	 */
+	public void add(PackageInfo packageInfo) {
+		String name = packageInfo.getName();
+		if(name==null) return;
+		if(packageInfo.isAbbreviated()) {
+			synchronized (this) {
+				//Lighter metadata has no description and keywords: don't override full information
+				if(packages.containsKey(name)) {
+					touch(name);
+					return;
+				}
+			}
+		}
+		SearchResultPackage summary = new SearchResultPackage();
+		summary.setName(name);
+		summary.setDescription(packageInfo.getDescription());
+		summary.setKeywords(packageInfo.getKeywords());
+		Set<String> packageTokens = new HashSet<>();
+		packageTokens.add(name.toLowerCase(Locale.ROOT));
+		tokenize(name, packageTokens);
+		tokenize(packageInfo.getDescription(), packageTokens);
+		if(packageInfo.getKeywords()!=null) {
+			for (String keyword : packageInfo.getKeywords()) tokenize(keyword, packageTokens);
+		}
+		synchronized (this) {
+			removeTokens(name);
+			packages.put(name, summary);
+			tokensOfPackages.put(name, packageTokens);
+			for (String token : packageTokens) {
+				tokens.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(name);
+			}
+			touch(name);
+			while(recentlyIndexed.size()>maxPackages) {
+				remove(recentlyIndexed.keySet().iterator().next());
+			}
+		}
+	}
+
+	private void touch(String packageName) {
+		recentlyIndexed.remove(packageName);
+		recentlyIndexed.put(packageName, Boolean.TRUE);
+	}
+
+	public synchronized void remove(String packageName) {
+		removeTokens(packageName);
+		packages.remove(packageName);
+		recentlyIndexed.remove(packageName);
+	}
+
+	private void removeTokens(String packageName) {
+		Set<String> previous = tokensOfPackages.remove(packageName);
+		if(previous==null) return;
+		for (String token : previous) {
+			Set<String> names = tokens.get(token);
+			if(names!=null) {
+				names.remove(packageName);
+				if(names.isEmpty()) tokens.remove(token);
+			}
+		}
+	}
+
+	/**
+	 * Search packages every word of query is a prefix of some word of their name, description or keywords
+	 * @param query text to search for
+	 * @param limit maximal number of packages to return
+	 * @return found packages: exact matches of name go first, then packages which names start with the query
+	 */
+	public List<SearchResultPackage> search(String query, int limit) {
+		Set<String> terms = new HashSet<>();
+		tokenize(query, terms);
+		if(terms.isEmpty() || limit<=0) return Collections.emptyList();
+		Set<String> found = null;
+		for (String term : terms) {
+			Set<String> matched = new HashSet<>();
+			for (Set<String> names : tokens.subMap(term, true, term+Character.MAX_VALUE, true).values()) {
+				matched.addAll(names);
+			}
+			if(found==null) found = matched;
+			else found.retainAll(matched);
+			if(found.isEmpty()) return Collections.emptyList();
+		}
+		String normalized = query.trim().toLowerCase(Locale.ROOT);
+		List<String> names = new ArrayList<>(found);
+		names.sort(Comparator.<String>comparingInt(n -> rank(n, normalized)).thenComparing(Comparator.naturalOrder()));
+		List<SearchResultPackage> ret = new ArrayList<>(Math.min(limit, names.size()));
+		for (String name : names) {
+			SearchResultPackage summary = packages.get(name);
+			if(summary!=null) ret.add(summary);
+			if(ret.size()>=limit) break;
+		}
+		return ret;
+	}
+
+	private static int rank(String name, String query) {
+		String lowerName = name.toLowerCase(Locale.ROOT);
+		if(lowerName.equals(query)) return 0;
+		if(lowerName.startsWith(query)) return 1;
+		return 2;
+	}
+
+	private static void tokenize(String text, Set<String> into) {
+		if(text==null) return;
+		for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+			if(!token.isEmpty()) into.add(token);
+		}
+	}
+
+	/**
+	 * @return number of indexed packages
+	 */
+	public int size() {
+		return packages.size();
+	}
+
+	public synchronized void clear() {
+		tokens.clear();
+		packages.clear();
+		tokensOfPackages.clear();
+		recentlyIndexed.clear();
+	}
+}
@@ -0,0 +1,16 @@
+package org.orienteer.jnpm;
+
+/**
+ * Profiles for parsing of packages metadata received from NPM registry
+ */
+public enum ParsingProfile {
+	/**
+	 * Bind all available metadata
+	 */
+	FULL,
+	/**
+	 * Stream through metadata and keep only fields required for versions resolution and installation:
+	 * names, versions, dist-tags, distribution info and dependencies
+	 */
+	RESOLUTION
+}
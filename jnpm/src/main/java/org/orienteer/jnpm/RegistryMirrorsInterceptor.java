@@ -0,0 +1,305 @@
+package org.orienteer.jnpm;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * {@link Interceptor} to route calls for the primary registry to a set of mirrors according to {@link MirrorPolicy}.
+ * Actual calls are executed by a client without this interceptor, so all other interceptors apply to every attempt.
+ * Attempts are executed on a bounded pool and canceled together with the routed call.
+ * Credentials of the primary registry are not sent to mirrors on other hosts.
+ */
+class RegistryMirrorsInterceptor implements Interceptor {
+
+	private static final int LATENCY_SAMPLES = 64;
+	private static final long POLL_INTERVAL = 100;
+
+	private static final int DEFAULT_MAX_ATTEMPTS = 64;
+	private static final long IDLE_TIMEOUT = 60; //In seconds
+
+	private final String primaryUrl;
+	private final HttpUrl primaryHttpUrl;
+	private final Mirror[] mirrors;
+	private final MirrorPolicy policy;
+	private final long hedgeDelay;
+	private final int hedgePercentile;
+	private final ThreadPoolExecutor attemptsExecutor;
+	private OkHttpClient client;
+
+	/**
+	 * Registry and statistics of its latency
+	 */
+	static class Mirror {
+		private final String url;
+		private final long[] latencies = new long[LATENCY_SAMPLES];
+		private int samples = 0;
+		private double averageLatency = 0;
+		private double failures = 0;
+
+		Mirror(String url) {
+			this.url = url;
+		}
+
+		synchronized void success(long latency) {
+			observe(latency);
+			failures /= 2;
+		}
+
+		/**
+		 * @param latency time after which call was still not completed
+		 */
+		synchronized void observe(long latency) {
+			latencies[samples++ % LATENCY_SAMPLES] = latency;
+			averageLatency = samples==1?latency:averageLatency*0.8 + latency*0.2;
+		}
+
+		synchronized void failure() {
+			failures++;
+		}
+
+		synchronized double getScore() {
+			return averageLatency * (1 + failures) + failures;
+		}
+
+		synchronized long getLatencyPercentile(int percentile, long defaultValue) {
+			int count = Math.min(samples, LATENCY_SAMPLES);
+			if(count<LATENCY_SAMPLES/4) return defaultValue;
+			long[] sorted = Arrays.copyOf(latencies, count);
+			Arrays.sort(sorted);
+			return sorted[Math.min(count-1, count*percentile/100)];
+		}
+
+		public String getUrl() {
+			return url;
+		}
+	}
+
+	/**
+	 * Result of a single attempt of hedged request
+	 */
+	private static class Attempt {
+		private final Mirror mirror;
+		private final Call call;
+		private final long start = System.currentTimeMillis();
+		private volatile Response response;
+		private volatile IOException error;
+
+		Attempt(Mirror mirror, Call call) {
+			this.mirror = mirror;
+			this.call = call;
+		}
+
+		boolean isSuccessful() {
+			return response!=null && !isFailure(response.code());
+		}
+	}
+
+	public RegistryMirrorsInterceptor(JNPMSettings settings) {
+		this(settings.getRegistryUrl(), settings.getMirrorUrls(), settings.getMirrorPolicy(),
+				settings.getHedgeDelay(), settings.getHedgePercentile(), settings.getMaxRequests());
+	}
+
+	public RegistryMirrorsInterceptor(String primaryUrl, List<String> mirrorUrls, MirrorPolicy policy,
+										long hedgeDelay, int hedgePercentile) {
+		this(primaryUrl, mirrorUrls, policy, hedgeDelay, hedgePercentile, DEFAULT_MAX_ATTEMPTS);
+	}
+
+	/**
+	 * @param primaryUrl URL of the primary registry
+	 * @param mirrorUrls URLs of mirrors of the registry
+	 * @param policy policy of selection between the registry and mirrors
+	 * @param hedgeDelay delay before hedging of a call until enough latencies are observed
+	 * @param hedgePercentile percentile of latencies to hedge a call after
+	 * @param maxAttempts maximal number of attempts to be executed concurrently
+	 */
+	public RegistryMirrorsInterceptor(String primaryUrl, List<String> mirrorUrls, MirrorPolicy policy,
+										long hedgeDelay, int hedgePercentile, int maxAttempts) {
+		this.primaryUrl = normalize(primaryUrl);
+		this.primaryHttpUrl = HttpUrl.get(this.primaryUrl);
+		this.mirrors = new Mirror[mirrorUrls.size()+1];
+		mirrors[0] = new Mirror(this.primaryUrl);
+		for (int i = 0; i < mirrorUrls.size(); i++) {
+			mirrors[i+1] = new Mirror(normalize(mirrorUrls.get(i)));
+		}
+		this.policy = policy!=null?policy:MirrorPolicy.FAILOVER;
+		this.hedgeDelay = hedgeDelay;
+		this.hedgePercentile = hedgePercentile;
+		int threads = Math.max(1, maxAttempts);
+		//Idle threads are stopped, so interceptors of dropped services don't keep threads
+		this.attemptsExecutor = new ThreadPoolExecutor(threads, threads, IDLE_TIMEOUT, TimeUnit.SECONDS,
+														new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, "jnpm-mirrors");
+			thread.setDaemon(true);
+			return thread;
+		});
+		attemptsExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private static String normalize(String url) {
+		return url.endsWith("/")?url:url+"/";
+	}
+
+	/**
+	 * @param client client to execute actual calls by. It should not contain this interceptor
+	 */
+	void setClient(OkHttpClient client) {
+		this.client = client;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		String url = request.url().toString();
+		if(!url.startsWith(primaryUrl)) {
+			//Not a registry call: executed as is, but should be canceled with the routed call too
+			return route(chain, Collections.singletonList(new Mirror(url)), m -> request, false);
+		}
+		String path = url.substring(primaryUrl.length());
+		List<Mirror> order = getOrder();
+		return route(chain, order, m -> toMirror(request, m, path), policy==MirrorPolicy.HEDGED && order.size()>1);
+	}
+
+	List<Mirror> getOrder() {
+		List<Mirror> order = new ArrayList<>(Arrays.asList(mirrors));
+		if(policy!=MirrorPolicy.FAILOVER) {
+			order.sort(Comparator.comparingDouble(Mirror::getScore));
+		}
+		return order;
+	}
+
+	private Request toMirror(Request request, Mirror mirror, String path) {
+		HttpUrl url = HttpUrl.get(mirror.url+path);
+		Request.Builder builder = request.newBuilder().url(url);
+		if(!url.host().equals(primaryHttpUrl.host()) || url.port()!=primaryHttpUrl.port()) {
+			//Marked requests are not authorized by AuthorizationInterceptor
+			builder.removeHeader("Authorization").tag(Mirror.class, mirror);
+		}
+		return builder.build();
+	}
+
+	static boolean isFailure(int code) {
+		return code>=500 || code==429;
+	}
+
+	/**
+	 * Execute attempts for mirrors in provided order till the first successful one.
+	 * Without hedging next attempt is started only when the previous one has failed.
+	 */
+	private Response route(Chain chain, List<Mirror> order, Function<Mirror, Request> toRequest,
+							boolean hedging) throws IOException {
+		BlockingQueue<Attempt> results = new LinkedBlockingQueue<>();
+		List<Attempt> started = new ArrayList<>();
+		Object lock = new Object();
+		boolean[] finished = new boolean[1];
+		int next = 0;
+		int pending = 0;
+		Attempt lastFailed = null;
+		long hedgeAt = 0;
+		try {
+			while(true) {
+				if(next<order.size() && (pending==0 || System.currentTimeMillis()>=hedgeAt)) {
+					Mirror mirror = order.get(next++);
+					started.add(start(mirror, toRequest.apply(mirror), results, lock, finished));
+					pending++;
+					hedgeAt = hedging?System.currentTimeMillis() + mirror.getLatencyPercentile(hedgePercentile, hedgeDelay)
+									 :Long.MAX_VALUE;
+				}
+				long wait = next<order.size()?Math.max(0, hedgeAt - System.currentTimeMillis()):POLL_INTERVAL;
+				Attempt done = results.poll(Math.min(wait, POLL_INTERVAL), TimeUnit.MILLISECONDS);
+				if(chain.call().isCanceled()) throw new IOException("Canceled");
+				if(done==null) continue;
+				pending--;
+				if(done.isSuccessful()) {
+					synchronized (lock) {
+						finished[0] = true;
+					}
+					for (Attempt attempt : started) {
+						if(attempt!=done && attempt.response==null && attempt.error==null) {
+							//Loser is slower than the winner at least by time it was running
+							attempt.mirror.observe(System.currentTimeMillis()-attempt.start);
+							attempt.call.cancel();
+						}
+					}
+					closeAll(results);
+					if(lastFailed!=null && lastFailed.response!=null) lastFailed.response.close();
+					return done.response;
+				}
+				if(lastFailed!=null && lastFailed.response!=null) lastFailed.response.close();
+				lastFailed = done;
+				if(pending==0 && next>=order.size()) {
+					synchronized (lock) {
+						finished[0] = true;
+					}
+					if(done.response!=null) return done.response;
+					throw done.error;
+				}
+				//Failed attempt should be replaced by the next mirror right away
+				hedgeAt = 0;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for mirrors");
+		} catch (IOException e) {
+			synchronized (lock) {
+				finished[0] = true;
+			}
+			for (Attempt attempt : started) attempt.call.cancel();
+			closeAll(results);
+			throw e;
+		}
+	}
+
+	private Attempt start(Mirror mirror, Request request, BlockingQueue<Attempt> results, Object lock, boolean[] finished) {
+		Attempt attempt = new Attempt(mirror, client.newCall(request));
+		attemptsExecutor.execute(() -> {
+			Response response = null;
+			IOException error = null;
+			try {
+				response = attempt.call.execute();
+			} catch (IOException e) {
+				error = e;
+			}
+			attempt.response = response;
+			attempt.error = error;
+			if(attempt.isSuccessful()) mirror.success(System.currentTimeMillis()-attempt.start);
+			else if(!attempt.call.isCanceled()) mirror.failure();
+			synchronized (lock) {
+				if(finished[0]) {
+					if(attempt.response!=null) attempt.response.close();
+				} else {
+					results.add(attempt);
+				}
+			}
+		});
+		return attempt;
+	}
+
+	private static void closeAll(BlockingQueue<Attempt> results) {
+		Attempt attempt;
+		while((attempt = results.poll())!=null) {
+			if(attempt.response!=null) attempt.response.close();
+		}
+	}
+
+	Mirror[] getMirrors() {
+		return mirrors;
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.orienteer.jnpm;
+
+import org.orienteer.jnpm.dm.VersionInfo;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Result of resolution of a version constraint for a package
+ */
+@Value
+@AllArgsConstructor
+public class Resolution {
+	private String packageName;
+	private String versionConstraint;
+	private VersionInfo version;
+	/**
+	 * Error occurred during retrieval of the package or null
+	 */
+	private Throwable error;
+
+	public Resolution(String packageName, String versionConstraint, VersionInfo version) {
+		this(packageName, versionConstraint, version, null);
+	}
+
+	/**
+	 * @return true if matching version was found
+	 */
+	public boolean isResolved() {
+		return version!=null;
+	}
+
+	/**
+	 * @return resolution request as expression: package@constraint
+	 */
+	public String getExpression() {
+		return packageName+"@"+versionConstraint;
+	}
+}
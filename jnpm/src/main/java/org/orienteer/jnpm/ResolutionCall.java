@@ -0,0 +1,18 @@
+package org.orienteer.jnpm;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks registry calls of {@link RxJNPMService} which are used only for versions resolution.
+ * Lighter metadata can be requested for such calls if it's allowed by {@link JNPMSettings}
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ResolutionCall {
+
+}
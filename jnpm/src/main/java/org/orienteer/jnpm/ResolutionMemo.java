@@ -0,0 +1,145 @@
+package org.orienteer.jnpm;
+
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.VersionInfo;
+
+/**
+ * Memo of resolved versions: (package name, version constraint) to the best matching version.
+ * Resolutions of a package are dropped as soon as a package information with another
+ * revision, modification date or dist-tags is observed.
+ */
+public class ResolutionMemo {
+
+	private final int maxPackages;
+	private final Map<String, PackageResolutions> packages;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Resolutions for a single package and state of the package they were made for.
+	 * Package information itself is referenced weakly: it's owned by caches of packages information
+	 */
+	private static class PackageResolutions {
+		private final String rev;
+		private final Date modified;
+		private final Map<String, String> distTags;
+		private final int versionsCount;
+		private volatile WeakReference<PackageInfo> source;
+		private final ConcurrentMap<String, Optional<VersionInfo>> resolved = new ConcurrentHashMap<>();
+
+		PackageResolutions(PackageInfo source) {
+			this.source = new WeakReference<>(source);
+			this.rev = source.getRev();
+			this.modified = source.getModified();
+			this.distTags = source.getDistTags();
+			this.versionsCount = source.getVersions()!=null?source.getVersions().size():0;
+		}
+
+		boolean isValidFor(PackageInfo packageInfo) {
+			if(source.get()==packageInfo) return true;
+			if(rev==null && modified==null) return false;
+			boolean valid = Objects.equals(rev, packageInfo.getRev())
+							&& Objects.equals(modified, packageInfo.getModified())
+							&& Objects.equals(distTags, packageInfo.getDistTags())
+							&& versionsCount==(packageInfo.getVersions()!=null?packageInfo.getVersions().size():0);
+			if(valid) source = new WeakReference<>(packageInfo);
+			return valid;
+		}
+	}
+
+	/**
+	 * @param maxPackages maximal number of packages to keep resolutions for. Memo is disabled if 0 or less
+	 */
+	public ResolutionMemo(final int maxPackages) {
+		this.maxPackages = maxPackages;
+		this.packages = new LinkedHashMap<String, PackageResolutions>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PackageResolutions> eldest) {
+				boolean remove = size() > maxPackages;
+				if(remove) evictions.incrementAndGet();
+				return remove;
+			}
+		};
+	}
+
+	/**
+	 * Lookup the best matching version in the memo or resolve it by provided package information
+	 * @param packageName name of the package
+	 * @param packageInfo actual information about the package
+	 * @param versionConstraint version range or tag
+	 * @return best matching version or null
+	 */
+	public VersionInfo bestMatch(String packageName, PackageInfo packageInfo, String versionConstraint) {
+		if(maxPackages<=0) {
+			misses.incrementAndGet();
+			return packageInfo.bestMatch(versionConstraint);
+		}
+		PackageResolutions resolutions;
+		synchronized (packages) {
+			resolutions = packages.get(packageName);
+			if(resolutions!=null && !resolutions.isValidFor(packageInfo)) {
+				invalidations.incrementAndGet();
+				resolutions = null;
+			}
+			if(resolutions==null) {
+				resolutions = new PackageResolutions(packageInfo);
+				packages.put(packageName, resolutions);
+			}
+		}
+		Optional<VersionInfo> ret = resolutions.resolved.get(versionConstraint);
+		if(ret!=null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			ret = Optional.ofNullable(packageInfo.bestMatch(versionConstraint));
+			resolutions.resolved.putIfAbsent(versionConstraint, ret);
+		}
+		return ret.orElse(null);
+	}
+
+	public void invalidate(String packageName) {
+		synchronized (packages) {
+			packages.remove(packageName);
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (packages) {
+			packages.clear();
+		}
+	}
+
+	/**
+	 * @return number of times resolutions of a package were dropped because the package has been changed
+	 */
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	/**
+	 * @return number of packages with memoized resolutions
+	 */
+	public int size() {
+		synchronized (packages) {
+			return packages.size();
+		}
+	}
+
+	public CacheStats getStats() {
+		return new CacheStats(hits.get(), misses.get(), evictions.get(), size());
+	}
+}
@@ -0,0 +1,253 @@
+package org.orienteer.jnpm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.orienteer.jnpm.dm.DistributionInfo;
+import org.orienteer.jnpm.dm.LazyVersionsMap;
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.VersionInfo;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+
+/**
+ * Streaming parser for packages metadata which keeps only fields required for versions resolution.
+ * Everything else (readme, scripts, time and etc.) is skipped on tokens level.
+ * See {@link ParsingProfile#RESOLUTION}
+ */
+class ResolutionMetadataParser {
+
+	private static final Set<String> VERSION_FIELDS = new HashSet<>(Arrays.asList("_id", "name", "version", "dist",
+																"dependencies", "optionalDependencies",
+																"devDependencies", "peerDependencies",
+																"bundleDependencies", "bundledDependencies"));
+
+	private final JsonFactory factory;
+
+	public ResolutionMetadataParser(JsonFactory factory) {
+		this.factory = factory;
+	}
+
+	public PackageInfo parsePackageInfo(InputStream in) throws IOException {
+		try(JsonParser parser = factory.createParser(in)) {
+			if(parser.nextToken()!=JsonToken.START_OBJECT) return null;
+			PackageInfo packageInfo = readPackageInfo(parser);
+			packageInfo.markAbbreviated();
+			return packageInfo;
+		}
+	}
+
+	public VersionInfo parseVersionInfo(InputStream in) throws IOException {
+		try(JsonParser parser = factory.createParser(in)) {
+			if(parser.nextToken()!=JsonToken.START_OBJECT) return null;
+			VersionInfo versionInfo = readVersionInfo(parser);
+			versionInfo.setAbbreviated(true);
+			return versionInfo;
+		}
+	}
+
+	private PackageInfo readPackageInfo(JsonParser parser) throws IOException {
+		PackageInfo packageInfo = new PackageInfo();
+		while(parser.nextToken()==JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "_id":
+					packageInfo.setId(readString(parser));
+					break;
+				case "_rev":
+					packageInfo.setRev(readString(parser));
+					break;
+				case "name":
+					packageInfo.setName(readString(parser));
+					break;
+				case "modified":
+					packageInfo.setModified(readDate(parser));
+					break;
+				case "dist-tags":
+					packageInfo.setDistTags(readStringMap(parser));
+					break;
+				case "versions":
+					if(token==JsonToken.START_OBJECT) {
+						LinkedHashMap<String, byte[]> rawVersions = new LinkedHashMap<>();
+						while(parser.nextToken()==JsonToken.FIELD_NAME) {
+							String version = parser.getCurrentName();
+							if(parser.nextToken()==JsonToken.START_OBJECT) rawVersions.put(version, copyVersionFields(parser));
+							else parser.skipChildren();
+						}
+						packageInfo.setVersions(new LazyVersionsMap(rawVersions, this::materializeVersion));
+					} else parser.skipChildren();
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return packageInfo;
+	}
+
+	/**
+	 * Copy only fields required for resolution from current version object
+	 * @param parser parser positioned at the start of version object
+	 * @return raw JSON of the version
+	 * @throws IOException if JSON can't be read
+	 */
+	private byte[] copyVersionFields(JsonParser parser) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try(JsonGenerator generator = factory.createGenerator(out)) {
+			generator.writeStartObject();
+			while(parser.nextToken()==JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if(VERSION_FIELDS.contains(field)) {
+					generator.writeFieldName(field);
+					generator.copyCurrentStructure(parser);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			generator.writeEndObject();
+		}
+		return out.toByteArray();
+	}
+
+	private VersionInfo materializeVersion(byte[] rawVersion) throws IOException {
+		try(JsonParser parser = factory.createParser(rawVersion)) {
+			parser.nextToken();
+			VersionInfo versionInfo = readVersionInfo(parser);
+			versionInfo.setAbbreviated(true);
+			return versionInfo;
+		}
+	}
+
+	private VersionInfo readVersionInfo(JsonParser parser) throws IOException {
+		VersionInfo versionInfo = new VersionInfo();
+		while(parser.nextToken()==JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+				case "_id":
+					versionInfo.setId(readString(parser));
+					break;
+				case "name":
+					versionInfo.setName(readString(parser));
+					break;
+				case "version":
+					versionInfo.setVersionAsString(readString(parser));
+					break;
+				case "dist":
+					if(token==JsonToken.START_OBJECT) versionInfo.setDist(readDistributionInfo(parser));
+					else parser.skipChildren();
+					break;
+				case "dependencies":
+					versionInfo.setDependencies(readStringMap(parser));
+					break;
+				case "optionalDependencies":
+					versionInfo.setOptionalDependencies(readStringMap(parser));
+					break;
+				case "devDependencies":
+					versionInfo.setDevDependencies(readStringMap(parser));
+					break;
+				case "peerDependencies":
+					versionInfo.setPeerDependencies(readStringMap(parser));
+					break;
+				case "bundleDependencies":
+				case "bundledDependencies":
+					versionInfo.setBundleDependencies(readStringList(parser));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return versionInfo;
+	}
+
+	private DistributionInfo readDistributionInfo(JsonParser parser) throws IOException {
+		DistributionInfo dist = new DistributionInfo();
+		while(parser.nextToken()==JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			switch (field) {
+				case "integrity":
+					dist.setIntegrity(readString(parser));
+					break;
+				case "shasum":
+					dist.setShasum(readString(parser));
+					break;
+				case "tarball":
+					dist.setTarball(readString(parser));
+					break;
+				case "fileCount":
+					dist.setFileCount(parser.getValueAsInt(-1));
+					break;
+				case "unpackedSize":
+					dist.setUnpackedSize(parser.getValueAsLong(-1));
+					break;
+				case "npm-signature":
+					dist.setNpmSignature(readString(parser));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return dist;
+	}
+
+	private String readString(JsonParser parser) throws IOException {
+		if(parser.currentToken().isStructStart()) {
+			parser.skipChildren();
+			return null;
+		}
+		return parser.getValueAsString();
+	}
+
+	private Date readDate(JsonParser parser) throws IOException {
+		String value = readString(parser);
+		try {
+			return value!=null?new StdDateFormat().parse(value):null;
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+
+	private Map<String, String> readStringMap(JsonParser parser) throws IOException {
+		if(parser.currentToken()!=JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return null;
+		}
+		Map<String, String> map = new LinkedHashMap<>();
+		while(parser.nextToken()==JsonToken.FIELD_NAME) {
+			String key = parser.getCurrentName();
+			parser.nextToken();
+			String value = readString(parser);
+			if(value!=null) map.put(key, value);
+		}
+		return map;
+	}
+
+	private List<String> readStringList(JsonParser parser) throws IOException {
+		if(parser.currentToken()!=JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return null;
+		}
+		List<String> list = new ArrayList<>();
+		while(parser.nextToken()!=JsonToken.END_ARRAY) {
+			String value = readString(parser);
+			if(value!=null) list.add(value);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,123 @@
+package org.orienteer.jnpm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * {@link Interceptor} to retry idempotent calls which failed due to throttling, temporary unavailability
+ * of the registry or transient network problems. Delays grow exponentially with jitter and respect "Retry-After" header:
+ * if registry asks to wait longer than maximal delay, its response is returned without retries.
+ */
+class RetryInterceptor implements Interceptor {
+
+	private final int maxRetries;
+	private final long backoff;
+	private final long maxBackoff;
+
+	public RetryInterceptor(JNPMSettings settings) {
+		this(settings.getMaxRetries(), settings.getRetryBackoff(), settings.getMaxRetryBackoff());
+	}
+
+	/**
+	 * @param maxRetries maximal number of retries for a call
+	 * @param backoff base delay in milliseconds before the first retry
+	 * @param maxBackoff maximal delay in milliseconds between retries
+	 */
+	public RetryInterceptor(int maxRetries, long backoff, long maxBackoff) {
+		this.maxRetries = maxRetries;
+		this.backoff = backoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		if(!isIdempotent(request)) return chain.proceed(request);
+		for(int attempt=0; ; attempt++) {
+			Response response;
+			try {
+				response = chain.proceed(request);
+			} catch (IOException e) {
+				if(attempt>=maxRetries || chain.call().isCanceled() || !isTransient(e)) throw e;
+				sleep(getDelay(attempt, null));
+				continue;
+			}
+			if(attempt>=maxRetries || !isRetryable(response.code())) return response;
+			long delay = getDelay(attempt, response.header("Retry-After"));
+			//Earlier retry would be throttled again
+			if(delay>maxBackoff) return response;
+			response.close();
+			sleep(delay);
+		}
+	}
+
+	static boolean isIdempotent(Request request) {
+		return "GET".equals(request.method()) || "HEAD".equals(request.method());
+	}
+
+	static boolean isRetryable(int code) {
+		return code==429 || code==502 || code==503 || code==504;
+	}
+
+	/**
+	 * @param e failure of a call
+	 * @return true if the same call might succeed later: timeouts, refused or reset connections
+	 */
+	static boolean isTransient(IOException e) {
+		if(e instanceof SocketTimeoutException || e instanceof SocketException || e instanceof EOFException) return true;
+		//OkHttp reports closed connections as "unexpected end of stream"
+		return e.getCause() instanceof EOFException;
+	}
+
+	static boolean isThrottled(int code) {
+		return code==429 || code==503;
+	}
+
+	long getDelay(int attempt, String retryAfter) {
+		Long requested = parseRetryAfter(retryAfter);
+		if(requested!=null) return Math.max(requested, 0);
+		long exponential = Math.min(backoff << Math.min(attempt, 30), maxBackoff);
+		//Equal jitter: half of the delay is fixed and another half is random
+		return exponential/2 + ThreadLocalRandom.current().nextLong(exponential/2+1);
+	}
+
+	/**
+	 * @param retryAfter value of "Retry-After" header: delay in seconds or HTTP date
+	 * @return requested delay in milliseconds or null if not specified
+	 */
+	static Long parseRetryAfter(String retryAfter) {
+		if(retryAfter==null || retryAfter.trim().isEmpty()) return null;
+		try {
+			return Long.parseLong(retryAfter.trim())*1000;
+		} catch (NumberFormatException e) {
+			try {
+				return ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+									.toInstant().toEpochMilli() - System.currentTimeMillis();
+			} catch (DateTimeParseException e1) {
+				return null;
+			}
+		}
+	}
+
+	private static void sleep(long delay) throws IOException {
+		if(delay<=0) return;
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for retry");
+		}
+	}
+
+}
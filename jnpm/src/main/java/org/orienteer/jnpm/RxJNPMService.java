@@ -1,27 +1,41 @@
 package org.orienteer.jnpm;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.orienteer.jnpm.dm.PackageInfo;
 import org.orienteer.jnpm.dm.RegistryInfo;
 import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.search.SearchResultItem;
+import org.orienteer.jnpm.dm.search.SearchResultPackage;
 import org.orienteer.jnpm.dm.search.SearchResults;
 import org.orienteer.jnpm.traversal.AbstractTraversalNode;
+import org.orienteer.jnpm.traversal.DependencyGraph;
+import org.orienteer.jnpm.traversal.FrontierTraversal;
 import org.orienteer.jnpm.traversal.ITraversalRule;
 import org.orienteer.jnpm.traversal.TraversalContext;
 import org.orienteer.jnpm.traversal.TraversalTree;
 import org.orienteer.jnpm.traversal.TraverseDirection;
 
-import com.vdurmont.semver4j.Requirement;
-
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 import retrofit2.http.GET;
+import retrofit2.http.Headers;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
 import retrofit2.http.Streaming;
@@ -32,6 +46,16 @@ import retrofit2.http.Url;
  */
 @SuppressWarnings("checkstyle:typename")
 public interface RxJNPMService {
+	
+	/**
+	 * Default number of packages to be retrieved concurrently during bulk resolution
+	 */
+	public static final int DEFAULT_RESOLUTION_WINDOW = 16;
+	
+	/**
+	 * Maximal number of packages NPM registry returns per search page
+	 */
+	public static final int MAX_SEARCH_PAGE_SIZE = 250;
 
 	@GET(".")
 	public Single<RegistryInfo> getRegistryInfo();
@@ -39,9 +63,39 @@ public interface RxJNPMService {
 	@GET("{package}")
 	public Maybe<PackageInfo> getPackageInfo(@Path("package") String packageName);
 	
+	/**
+	 * Retrieve package information required for versions resolution.
+	 * Abbreviated metadata is requested if {@link JNPMSettings#isUseAbbreviatedMetadata()} is enabled.
+	 * Response is parsed according to {@link JNPMSettings#getParsingProfile()}
+	 * @param packageName name of the package to lookup
+	 * @return package information which might contain only fields required for installation
+	 */
+	@GET("{package}")
+	@ResolutionCall
+	public Maybe<PackageInfo> getPackageInfoForResolution(@Path("package") String packageName);
+	
 
 	@GET("{package}/{version}")
 	public Maybe<VersionInfo> getVersionInfo(@Path("package") String packageName, @Path("version") String version);
+	
+	/**
+	 * Retrieve version information required for versions resolution.
+	 * Response is parsed according to {@link JNPMSettings#getParsingProfile()}
+	 * @param packageName name of the package
+	 * @param version exact version
+	 * @return version information which might contain only fields required for installation
+	 */
+	@GET("{package}/{version}")
+	@ResolutionCall
+	public Maybe<VersionInfo> getVersionInfoForResolution(@Path("package") String packageName, @Path("version") String version);
+	
+	/**
+	 * Retrieve only dist-tags of a package
+	 * @param packageName name of the package to lookup
+	 * @return map from tag to version
+	 */
+	@GET("-/package/{package}/dist-tags")
+	public Maybe<Map<String, String>> getDistTags(@Path("package") String packageName);
 
 	@GET("-/v1/search")
 	public Single<SearchResults> search(@Query("text") String text,
@@ -51,8 +105,14 @@ public interface RxJNPMService {
 										@Query("popularity") Float popularity,
 										@Query("maintenance") Float maintenance);
 	
+	/**
+	 * Download file by provided URL. Tarballs are cached by JNPM separately, so they are not stored in HTTP cache
+	 * @param fileUrl URL of the file to download
+	 * @return response with streamed body
+	 */
 	@Streaming
     @GET
+    @Headers("Cache-Control: no-store")
     public Maybe<Response<ResponseBody>> downloadFile(@Url String fileUrl);
 	
 	public default Single<SearchResults> search(String text, Integer size, Integer from) {
@@ -67,20 +127,50 @@ public interface RxJNPMService {
 		return search(text, null);
 	}
 	
+	/**
+	 * Search packages page by page lazily: next page is requested while current one is being consumed
+	 * and nothing is requested after cancellation
+	 * @param text text to search for
+	 * @param pageSize number of packages to request per page
+	 * @return flowable of found packages
+	 */
+	public default Flowable<SearchResultPackage> searchAll(String text, int pageSize) {
+		return searchAll(text, pageSize, null, null, null);
+	}
+	
+	/**
+	 * Search packages page by page lazily: next page is requested while current one is being consumed
+	 * and nothing is requested after cancellation
+	 * @param text text to search for
+	 * @param pageSize number of packages to request per page: values above {@link #MAX_SEARCH_PAGE_SIZE} are reduced to it
+	 * @param quality weight of quality
+	 * @param popularity weight of popularity
+	 * @param maintenance weight of maintenance
+	 * @return flowable of found packages
+	 */
+	public default Flowable<SearchResultPackage> searchAll(String text, int pageSize, 
+														Float quality, Float popularity, Float maintenance) {
+		if(pageSize<=0) throw new IllegalArgumentException("Page size should be positive, but was "+pageSize);
+		//Registry returns not more than maximal page size, so bigger pages would look like the last one
+		int size = Math.min(pageSize, MAX_SEARCH_PAGE_SIZE);
+		return Flowable.defer(() -> {
+			AtomicInteger total = new AtomicInteger(Integer.MAX_VALUE);
+			return Flowable.range(0, Integer.MAX_VALUE)
+					.takeWhile(page -> (long)page*size < total.get())
+					.concatMap(page -> search(text, size, page*size, quality, popularity, maintenance)
+												.doOnSuccess(results -> total.set(results.getTotal()))
+												.toFlowable(), 1)
+					.takeUntil(results -> results.getObjects()==null || results.getObjects().size()<size)
+					//Next page is requested as soon as consumption of the current one starts
+					.concatMapIterable(results -> results.getObjects()!=null?results.getObjects()
+																			:Collections.<SearchResultItem>emptyList(), 1)
+					.map(SearchResultItem::getSearchPackage);
+		});
+	}
+	
 	public default Observable<VersionInfo> retrieveVersions(String packageName, String versionConstraint) {
-    	final Requirement res = JNPMUtils.toVersionPredicate(versionConstraint);
-        if(res!=null) {
-        	return getPackageInfo(packageName)
-    						.flatMapObservable(p -> Observable.fromIterable(p.getVersions().values()))
-    						.filter(v -> v.satisfies(res));
-        } else {
-        	//It's probably a tag
-        	return getPackageInfo(packageName).flatMapObservable((p) -> {
-        		String version = p.getDistTags().get(versionConstraint);
-        		VersionInfo versionInfo = version!=null?p.getVersions().get(version):null;
-        		return versionInfo!=null?Observable.just(versionInfo):Observable.empty();
-        	});
-        }
+		return getPackageInfoForResolution(packageName)
+					.flatMapObservable(p -> Observable.fromIterable(p.retrieveVersions(versionConstraint)));
     }
 	
 	public default Observable<VersionInfo> retrieveVersions(String expression) {
@@ -93,35 +183,198 @@ public interface RxJNPMService {
     }
 	
 	public default Maybe<VersionInfo> bestMatch(String packageName, String versionConstraint) {
-		return retrieveVersions(packageName, versionConstraint).sorted().lastElement();
+		return getPackageInfoForResolution(packageName)
+					.flatMap(p -> {
+						VersionInfo version = p.bestMatch(versionConstraint);
+						return version!=null?Maybe.just(version):Maybe.empty();
+					});
     }
     
     public default Maybe<VersionInfo> bestMatch(String expression) {
-    	return retrieveVersions(expression).sorted().lastElement();
+    	int indx = expression.lastIndexOf('@');
+    	if(indx>0) {
+    		return bestMatch(expression.substring(0, indx), expression.substring(indx+1));
+    	} else {
+    		return bestMatch(expression, "latest");
+    	}
     }
-    
+
+    /**
+     * Resolve many dependencies at once: information about every package is retrieved only once
+     * and all constraints for the package are resolved by it
+     * @param dependencies map from package name to version constraint
+     * @return resolutions in order of their completion
+     */
+    public default Observable<Resolution> resolveAll(Map<String, String> dependencies) {
+    	return resolveAll(dependencies.entrySet(), DEFAULT_RESOLUTION_WINDOW);
+    }
+
+    /**
+     * Resolve many expressions (package@constraint) at once
+     * @param expressions expressions to resolve. "latest" is used if constraint is not specified
+     * @return resolutions in order of their completion
+     */
+    public default Observable<Resolution> resolveAll(String... expressions) {
+    	List<Map.Entry<String, String>> requests = new ArrayList<>(expressions.length);
+    	for (String expression : expressions) {
+    		int indx = expression.lastIndexOf('@');
+    		requests.add(indx>0?new SimpleImmutableEntry<>(expression.substring(0, indx), expression.substring(indx+1))
+    						   :new SimpleImmutableEntry<>(expression, "latest"));
+		}
+    	return resolveAll(requests, DEFAULT_RESOLUTION_WINDOW);
+    }
+
+    /**
+     * Resolve many dependencies at once
+     * @param requests pairs of package name and version constraint
+     * @param maxConcurrency maximal number of packages to be retrieved concurrently
+     * @return resolutions in order of their completion
+     */
+    public default Observable<Resolution> resolveAll(Collection<? extends Map.Entry<String, String>> requests, int maxConcurrency) {
+    	return Observable.defer(() -> {
+    		Map<String, Set<String>> grouped = new LinkedHashMap<>();
+    		for (Map.Entry<String, String> request : requests) {
+    			grouped.computeIfAbsent(request.getKey(), k -> new LinkedHashSet<>()).add(request.getValue());
+			}
+    		return Observable.fromIterable(grouped.entrySet())
+    					.flatMap(e -> resolveAll(e.getKey(), e.getValue()), maxConcurrency);
+    	});
+    }
+
+    /**
+     * Resolve many version constraints for a single package
+     * @param packageName name of the package
+     * @param versionConstraints version constraints to resolve
+     * @return resolution for every constraint: not resolved ones and ones failed due to errors are returned too
+     */
+    public default Observable<Resolution> resolveAll(String packageName, Collection<String> versionConstraints) {
+    	return getPackageInfoForResolution(packageName)
+    				.flatMapObservable(p -> Observable.fromIterable(versionConstraints)
+    									.map(c -> new Resolution(packageName, c, p.bestMatch(c))))
+    				.switchIfEmpty(Observable.fromIterable(versionConstraints)
+    									.map(c -> new Resolution(packageName, c, null)))
+    				.onErrorResumeNext((Throwable e) -> Observable.fromIterable(versionConstraints)
+    									.map(c -> new Resolution(packageName, c, null, e)));
+    }
+
     public default Observable<TraversalTree> traverse(TraverseDirection direction, ITraversalRule rule, String... specifications) {
     	List<VersionInfo> roots;
 		try {
-			roots = Observable.fromArray(specifications)
-					.flatMapSingle(s-> bestMatch(s)
-										.toSingle()
-										.onErrorResumeNext(
-												Single.error(new NoSuchElementException("Package '"+s+"' was not found"))))
-					.toList()
-					.blockingGet();
-		} catch (Exception e) {
-			return Observable.error(e);
+			roots = resolveRoots(specifications).blockingGet();
+		} catch (RuntimeException e) {
+			//Checked exceptions are wrapped by blockingGet()
+			return Observable.error(e.getClass()==RuntimeException.class && e.getCause()!=null?e.getCause():e);
 		}
     	return traverse(direction, rule, roots.toArray(new VersionInfo[roots.size()]));
     }
+    
+    /**
+     * Resolve specifications of packages to start traversal from
+     * @param specifications packages specifications: name or name@versionConstraint
+     * @return resolved versions, {@link NoSuchElementException} if some package was not found
+     * or error of the registry if some package failed to be retrieved
+     */
+    public default Single<List<VersionInfo>> resolveRoots(String... specifications) {
+    	Map<String, String> specs = new HashMap<>();
+    	for (String s : specifications) specs.put(s.lastIndexOf('@')>0?s:s+"@latest", s);
+    	return resolveAll(specifications)
+				.concatMap(r -> {
+					//Errors of the registry should not be reported as missing packages
+					if(r.getError()!=null) return Observable.<VersionInfo>error(r.getError());
+					if(!r.isResolved()) return Observable.<VersionInfo>error(new NoSuchElementException("Package '"
+										+specs.getOrDefault(r.getExpression(), r.getExpression())+"' was not found"));
+					return Observable.just(r.getVersion());
+				})
+				.toList();
+    }
    
 	
 	public default Observable<TraversalTree> traverse(TraverseDirection direction, ITraversalRule rule, VersionInfo... roots) {
-		TraversalContext ctx = new TraversalContext(direction, rule, roots);
+		return traverse(newTraversalContext(direction, rule, roots));
+	}
+	
+	/**
+	 * @param direction direction of traversal
+	 * @param rule rule to select dependencies of roots
+	 * @param roots versions to start from
+	 * @return new context for traversal by this service
+	 */
+	public default TraversalContext newTraversalContext(TraverseDirection direction, ITraversalRule rule, VersionInfo... roots) {
+		return new TraversalContext(direction, rule, roots);
+	}
+	
+	/**
+	 * Traverse from roots of provided context. Wider traversal is done level by level:
+	 * distinct dependencies of the whole level are resolved concurrently
+	 * @param ctx context to traverse
+	 * @return traversed nodes
+	 */
+	public default Observable<TraversalTree> traverse(TraversalContext ctx) {
+		if(ctx.getDirection()==TraverseDirection.WIDER) return FrontierTraversal.traverse(ctx, DEFAULT_RESOLUTION_WINDOW);
 		return traverse(ctx, true);
 	}
     
+	/**
+	 * Traverse with backpressure: packages are resolved only when traversed nodes are requested,
+	 * so slow consumer throttles resolution instead of buffering whole traversal
+	 * @param direction direction of traversal
+	 * @param rule rule to select dependencies of roots
+	 * @param prefetch number of traversed nodes to be requested ahead of the consumer
+	 * @param specifications packages specifications: name or name@versionConstraint
+	 * @return traversed nodes
+	 */
+	public default Flowable<TraversalTree> traverseFlowable(TraverseDirection direction, ITraversalRule rule, int prefetch,
+															String... specifications) {
+		return resolveRoots(specifications)
+					.flatMapPublisher(roots -> traverseFlowable(direction, rule, prefetch,
+																roots.toArray(new VersionInfo[roots.size()])));
+	}
+	
+	public default Flowable<TraversalTree> traverseFlowable(TraverseDirection direction, ITraversalRule rule, int prefetch,
+															VersionInfo... roots) {
+		return traverseFlowable(newTraversalContext(direction, rule, roots), prefetch);
+	}
+	
+	/**
+	 * Traverse with backpressure from roots of provided context. Order of nodes is the same as for {@link #traverse(TraversalContext)}
+	 * for {@link TraverseDirection#WIDER}: next level is resolved only when the current one is requested.
+	 * {@link TraverseDirection#DEEPER} goes to dependencies of a node strictly one after another.
+	 * @param ctx context to traverse
+	 * @param prefetch number of traversed nodes to be requested ahead of the consumer
+	 * @return traversed nodes
+	 */
+	public default Flowable<TraversalTree> traverseFlowable(TraversalContext ctx, int prefetch) {
+		if(prefetch<=0) throw new IllegalArgumentException("Prefetch should be positive, but was "+prefetch);
+		if(ctx.getDirection()==TraverseDirection.WIDER) 
+			return FrontierTraversal.traverseFlowable(ctx, DEFAULT_RESOLUTION_WINDOW).rebatchRequests(prefetch);
+		return traverseFlowable(ctx, true, prefetch);
+	}
+	
+	public default Flowable<TraversalTree> traverseFlowable(AbstractTraversalNode node, boolean doForThis, int prefetch) {
+		return Flowable.defer(() -> {
+			Flowable<TraversalTree> self = doForThis && node instanceof TraversalTree
+											?Flowable.just((TraversalTree)node).doOnNext(TraversalTree::commit)
+											:Flowable.<TraversalTree>empty();
+			//Check after commit: duplicates are detected on commit
+			return self.concatWith(Flowable.defer(() -> {
+				if(!node.isTraversableDeeper()) return Flowable.<TraversalTree>empty();
+				return node.getNextTraversalNodes()
+							.toFlowable(BackpressureStrategy.BUFFER)
+							.concatMap(t -> traverseFlowable(t, true, prefetch), prefetch);
+			}));
+		});
+	}
+	
+	/**
+	 * Resolve dependencies into compact graph instead of tree of nodes: suitable for huge traversals
+	 * @param rule rule to select dependencies of roots
+	 * @param roots versions to start from
+	 * @return graph of resolved dependencies
+	 */
+	public default Single<DependencyGraph> resolveGraph(ITraversalRule rule, VersionInfo... roots) {
+		return DependencyGraph.build(this, rule, DEFAULT_RESOLUTION_WINDOW, roots);
+	}
+	
 	public default Observable<TraversalTree> traverse(AbstractTraversalNode node, boolean doForThis) {
 		TraversalContext ctx = node.getContext();
 		return Observable.defer(() -> {
@@ -0,0 +1,46 @@
+package org.orienteer.jnpm;
+
+import lombok.Builder;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Registry to be used for packages of a scope: analog of "@scope:registry" in .npmrc
+ */
+@Builder(toBuilder = true)
+@Value
+public class ScopedRegistry {
+
+	private String scope;
+	private String registryUrl;
+	private String username;
+	@ToString.Exclude private String password;
+
+	public static ScopedRegistry of(String scope, String registryUrl) {
+		return builder().scope(scope).registryUrl(registryUrl).build();
+	}
+
+	/**
+	 * @return scope with leading '@'
+	 */
+	public String getScope() {
+		return scope==null || scope.startsWith("@")?scope:"@"+scope;
+	}
+
+	/**
+	 * @return URL of the registry ending with '/'
+	 */
+	public String getRegistryUrl() {
+		return registryUrl==null || registryUrl.endsWith("/")?registryUrl:registryUrl+"/";
+	}
+
+	/**
+	 * @param packageName name of a package
+	 * @return scope of the package (for example, "@angular") or null if package is not scoped
+	 */
+	public static String getScopeOf(String packageName) {
+		if(packageName==null || !packageName.startsWith("@")) return null;
+		int indx = packageName.indexOf('/');
+		return indx>0?packageName.substring(0, indx):null;
+	}
+}
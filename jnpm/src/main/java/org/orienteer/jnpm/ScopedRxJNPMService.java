@@ -0,0 +1,91 @@
+package org.orienteer.jnpm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.orienteer.jnpm.dm.PackageInfo;
+import org.orienteer.jnpm.dm.RegistryInfo;
+import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.search.SearchResults;
+
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * {@link RxJNPMService} which routes calls for scoped packages to registries configured for these scopes.
+ * Everything else goes to the default registry.
+ */
+class ScopedRxJNPMService implements RxJNPMService {
+
+	private final RxJNPMService defaultService;
+	private final Map<String, RxJNPMService> scopedServices = new LinkedHashMap<>();
+	private final Map<String, RxJNPMService> servicesByUrl = new LinkedHashMap<>();
+
+	public ScopedRxJNPMService(RxJNPMService defaultService) {
+		this.defaultService = defaultService;
+	}
+
+	/**
+	 * Register service to be used for the scope
+	 * @param scope scope with leading '@'
+	 * @param registryUrl URL of the registry: files under it are downloaded through the service as well
+	 * @param service service to be used
+	 */
+	void addScope(String scope, String registryUrl, RxJNPMService service) {
+		scopedServices.put(scope, service);
+		servicesByUrl.put(registryUrl.endsWith("/")?registryUrl:registryUrl+"/", service);
+	}
+
+	RxJNPMService getServiceFor(String packageName) {
+		String scope = ScopedRegistry.getScopeOf(packageName);
+		RxJNPMService service = scope!=null?scopedServices.get(scope):null;
+		return service!=null?service:defaultService;
+	}
+
+	@Override
+	public Single<RegistryInfo> getRegistryInfo() {
+		return defaultService.getRegistryInfo();
+	}
+
+	@Override
+	public Maybe<PackageInfo> getPackageInfo(String packageName) {
+		return getServiceFor(packageName).getPackageInfo(packageName);
+	}
+
+	@Override
+	public Maybe<PackageInfo> getPackageInfoForResolution(String packageName) {
+		return getServiceFor(packageName).getPackageInfoForResolution(packageName);
+	}
+
+	@Override
+	public Maybe<VersionInfo> getVersionInfo(String packageName, String version) {
+		return getServiceFor(packageName).getVersionInfo(packageName, version);
+	}
+
+	@Override
+	public Maybe<VersionInfo> getVersionInfoForResolution(String packageName, String version) {
+		return getServiceFor(packageName).getVersionInfoForResolution(packageName, version);
+	}
+
+	@Override
+	public Maybe<Map<String, String>> getDistTags(String packageName) {
+		return getServiceFor(packageName).getDistTags(packageName);
+	}
+
+	@Override
+	public Single<SearchResults> search(String text, Integer size, Integer from, Float quality, Float popularity,
+			Float maintenance) {
+		return defaultService.search(text, size, from, quality, popularity, maintenance);
+	}
+
+	@Override
+	public Maybe<Response<ResponseBody>> downloadFile(String fileUrl) {
+		for (Map.Entry<String, RxJNPMService> entry : servicesByUrl.entrySet()) {
+			if(fileUrl.startsWith(entry.getKey())) return entry.getValue().downloadFile(fileUrl);
+		}
+		return defaultService.downloadFile(fileUrl);
+	}
+
+}
@@ -0,0 +1,68 @@
+package org.orienteer.jnpm;
+
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+
+/**
+ * Resources shared by all {@link JNPMService}s of the JVM where their settings allow it:
+ * connections pools per registry, HTTP caches per directory and in-memory metadata caches per registry
+ */
+final class SharedResources {
+
+	private static final Map<List<Object>, ConnectionPool> CONNECTION_POOLS = new ConcurrentHashMap<>();
+	private static final Map<Path, Cache> HTTP_CACHES = new ConcurrentHashMap<>();
+	private static final Map<List<Object>, WeakReference<MetadataCaches>> METADATA_CACHES = new ConcurrentHashMap<>();
+
+	private SharedResources() {
+	}
+
+	/**
+	 * @param settings settings of a registry
+	 * @return connections pool for the registry
+	 */
+	public static ConnectionPool getConnectionPool(JNPMSettings settings) {
+		List<Object> key = Arrays.asList(settings.getRegistryUrl(),
+										 settings.getMaxIdleConnections(), settings.getKeepAliveDuration());
+		return CONNECTION_POOLS.computeIfAbsent(key, k -> new ConnectionPool(settings.getMaxIdleConnections(),
+																	settings.getKeepAliveDuration(), TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Only one {@link Cache} can work with a directory, so it's shared by all services which use the directory.
+	 * Size of the cache is defined by settings of the first service.
+	 * @param settings settings to get directory and size of the cache from
+	 * @return HTTP cache or null if it's disabled
+	 */
+	public static Cache getHttpCache(JNPMSettings settings) {
+		if(!settings.isUseHttpCache()) return null;
+		Path directory = settings.getHttpCacheDirectory().toAbsolutePath().normalize();
+		return HTTP_CACHES.computeIfAbsent(directory, d -> new Cache(d.toFile(), settings.getHttpCacheSize()));
+	}
+
+	/**
+	 * In-memory caches are kept only while some service uses them
+	 * @param settings settings of a service
+	 * @return caches of packages information for the registry of the service
+	 */
+	public static MetadataCaches getMetadataCaches(JNPMSettings settings) {
+		List<Object> key = settings.getRegistryIdentity();
+		synchronized (METADATA_CACHES) {
+			WeakReference<MetadataCaches> ref = METADATA_CACHES.get(key);
+			MetadataCaches caches = ref!=null?ref.get():null;
+			if(caches==null) {
+				METADATA_CACHES.values().removeIf(r -> r.get()==null);
+				caches = new MetadataCaches(settings);
+				METADATA_CACHES.put(key, new WeakReference<>(caches));
+			}
+			return caches;
+		}
+	}
+}
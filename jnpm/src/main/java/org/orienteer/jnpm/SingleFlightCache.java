@@ -0,0 +1,133 @@
+package org.orienteer.jnpm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import io.reactivex.Maybe;
+
+/**
+ * Bounded in-memory cache for results of asynchronous calls.
+ * Concurrent requests for the same key share single in-flight call.
+ * Failed calls are not cached.
+ * @param <K> type of keys
+ * @param <V> type of cached values
+ */
+public class SingleFlightCache<K, V> {
+
+	private final int maxSize;
+	private final long ttl;
+	private final Map<K, Entry<V>> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Cache entry: shared {@link Maybe} and moment of its creation
+	 * @param <V> type of cached value
+	 */
+	private static class Entry<V> {
+		private final long created = System.currentTimeMillis();
+		private Maybe<V> value;
+	}
+
+	/**
+	 * @param maxSize maximal number of entries to keep. Cache is disabled if 0 or less
+	 * @param ttl time to live for entries. Entries never expire if 0 or less
+	 * @param unit time unit for ttl
+	 */
+	public SingleFlightCache(final int maxSize, long ttl, TimeUnit unit) {
+		this.maxSize = maxSize;
+		this.ttl = unit.toMillis(ttl);
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				boolean remove = size() > maxSize;
+				if(remove) evictions.incrementAndGet();
+				return remove;
+			}
+		};
+	}
+
+	/**
+	 * Lookup value in the cache or load it by provided loader
+	 * @param key key to lookup by
+	 * @param loader supplier of actual call if value is not in the cache
+	 * @return cached or just loaded value
+	 */
+	public Maybe<V> get(K key, Supplier<Maybe<V>> loader) {
+		if(maxSize<=0) {
+			misses.incrementAndGet();
+			return loader.get();
+		}
+		return Maybe.defer(() -> {
+			Entry<V> entry;
+			synchronized (entries) {
+				entry = entries.get(key);
+				if(entry!=null && isExpired(entry)) {
+					entries.remove(key);
+					entry = null;
+				}
+				if(entry==null) {
+					misses.incrementAndGet();
+					final Entry<V> newEntry = new Entry<>();
+					newEntry.value = loader.get()
+									.doOnError(e -> invalidate(key, newEntry))
+									.cache();
+					entries.put(key, newEntry);
+					entry = newEntry;
+				} else {
+					hits.incrementAndGet();
+				}
+			}
+			return entry.value;
+		});
+	}
+
+	/**
+	 * @param key key to check
+	 * @return true if value for the key is in the cache or being loaded right now
+	 */
+	public boolean contains(K key) {
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			return entry!=null && !isExpired(entry);
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	private void invalidate(K key, Entry<V> entry) {
+		synchronized (entries) {
+			entries.remove(key, entry);
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	private boolean isExpired(Entry<V> entry) {
+		return ttl>0 && System.currentTimeMillis() - entry.created > ttl;
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public CacheStats getStats() {
+		return new CacheStats(hits.get(), misses.get(), evictions.get(), size());
+	}
+}
@@ -75,14 +75,18 @@ public class CDNRequest {
 	}
 	
 	public VersionInfo resolveVersion(Map<String, VersionInfo> versionsCache) {
+		return resolveVersion(JNPMService.instance(), versionsCache);
+	}
+	
+	public VersionInfo resolveVersion(JNPMService service, Map<String, VersionInfo> versionsCache) {
 		VersionInfo version =  versionsCache.computeIfAbsent(getPackageVersionExpression(),
 				expression -> {
-					VersionInfo ret = JNPMService.instance().bestMatch(expression);
+					VersionInfo ret = service.bestMatch(expression);
 					return ret==null?NULL_VERSION:ret;
 				});
 		if(version!=null && version != NULL_VERSION) {
-			boolean useCache = forceDownload!=null?!forceDownload:JNPMService.instance().getSettings().isUseCache();
-			version.downloadTarball(useCache).blockingAwait();
+			boolean useCache = forceDownload!=null?!forceDownload:service.getSettings().isUseCache();
+			version.downloadTarball(service, useCache).blockingAwait();
 			return version;
 		} else return null;
 	}
@@ -130,6 +134,15 @@ public class CDNRequest {
 	}
 	
 	public String buildRedirectUrl(VersionInfo resolvedVersion) {
+		return buildRedirectUrl(null, resolvedVersion);
+	}
+	
+	/**
+	 * @param service service to retrieve full version information by or null to use default {@link JNPMService#instance()}
+	 * @param resolvedVersion version to redirect to
+	 * @return URL to redirect to
+	 */
+	public String buildRedirectUrl(JNPMService service, VersionInfo resolvedVersion) {
 		StringBuilder sb = new StringBuilder();
 		
 		if(scope != null) {
@@ -139,7 +152,7 @@ public class CDNRequest {
 		
 		String redirectPath = path;
 		if(redirectPath == null || redirectPath.isEmpty()) {
-			redirectPath = getDefaultPath(resolvedVersion);
+			redirectPath = getDefaultPath(service, resolvedVersion);
 		}
 		
 		if(redirectPath != null && !redirectPath.isEmpty()) {
@@ -150,6 +163,16 @@ public class CDNRequest {
 	}
 	
 	public String getDefaultPath(VersionInfo versionInfo) {
+		return getDefaultPath(null, versionInfo);
+	}
+	
+	/**
+	 * @param service service to retrieve full version information by or null to use default {@link JNPMService#instance()}
+	 * @param versionInfo version to lookup default path for
+	 * @return path from "unpkg" or "jsdelivr" fields of the version or null
+	 */
+	public String getDefaultPath(JNPMService service, VersionInfo versionInfo) {
+		versionInfo = service!=null?versionInfo.toFullVersionInfo(service):versionInfo.toFullVersionInfo();
 		if(versionInfo.getUnpkg() != null && !versionInfo.getUnpkg().isEmpty()) {
 			return versionInfo.getUnpkg();
 		}
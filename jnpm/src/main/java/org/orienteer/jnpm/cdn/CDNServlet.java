@@ -31,11 +31,17 @@ public class CDNServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	private Map<String, VersionInfo> versionsCache = new HashMap<String, VersionInfo>();
 	
+	/**
+	 * Service of this servlet or null if default one should be used
+	 */
+	private transient JNPMService service;
+	
 	@Override
 	public void init() throws ServletException {
-		if(!JNPMService.isConfigured()) {
+		ServletConfig cfg = getServletConfig();
+		boolean standalone = Boolean.parseBoolean(cfg.getInitParameter("standalone"));
+		if(standalone || !JNPMService.isConfigured()) {
 			JNPMSettings.JNPMSettingsBuilder builder = JNPMSettings.builder();
-			ServletConfig cfg = getServletConfig();
 			
 			String registryUrl = cfg.getInitParameter("registryUrl");
 			if(!Strings.isEmpty(registryUrl)) builder.registryUrl(registryUrl);
@@ -51,10 +57,36 @@ public class CDNServlet extends HttpServlet {
 			
 			builder.username(cfg.getInitParameter("username")).password(cfg.getInitParameter("password"));
 			
-			JNPMService.configure(builder.build());
+			if(standalone) {
+				//Own service allows to serve several registries from the same application
+				try {
+					service = JNPMService.create(builder.build());
+				} catch (IOException e) {
+					throw new ServletException("Can't create JNPM service for CDN", e);
+				}
+			} else {
+				JNPMService.configure(builder.build());
+			}
 		}
 	}
 	
+	@Override
+	public void destroy() {
+		//Only own service is closed: default one might be used by the rest of the application
+		if(service!=null) {
+			service.close();
+			service = null;
+		}
+		super.destroy();
+	}
+
+	/**
+	 * @return service to resolve and download packages by
+	 */
+	protected JNPMService getService() {
+		return service!=null?service:JNPMService.instance();
+	}
+	
 	@Override
 	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		try {
@@ -62,14 +94,14 @@ public class CDNServlet extends HttpServlet {
 			String forceParam = req.getParameter("force");
 			if(forceParam!=null) request.forceDownload(Boolean.parseBoolean(forceParam));
 			
-			VersionInfo resolvedVersion = request.resolveVersion(versionsCache);
+			VersionInfo resolvedVersion = request.resolveVersion(getService(), versionsCache);
 			if(resolvedVersion == null) {
 				resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Package was not found for " + request.getPackageVersionExpression());
 				return;
 			}
 			
 			if(request.shouldRedirect()) {
-				String redirectUrl = request.buildRedirectUrl(resolvedVersion);
+				String redirectUrl = request.buildRedirectUrl(getService(), resolvedVersion);
 				if(redirectUrl != null) {
 					String queryString = req.getQueryString();
 					if(queryString != null && !queryString.isEmpty()) {
@@ -87,7 +119,7 @@ public class CDNServlet extends HttpServlet {
 			
 			resp.setContentType(JNPMUtils.fileNameToMimeType(request.getFileName()));
 			resp.addHeader("Cache-Control", "public, max-age=604800, immutable");
-			JNPMUtils.readTarball(resolvedVersion, 
+			JNPMUtils.readTarball(resolvedVersion.getLocalTarball(getService()), 
 					"/package/"+request.getPath(), 
 					resp.getOutputStream());
 		} catch (IllegalArgumentException | FileNotFoundException e) {
@@ -3,13 +3,14 @@ package org.orienteer.jnpm.cli;
 import java.util.concurrent.Callable;
 
 import org.orienteer.jnpm.JNPMService;
+import org.orienteer.jnpm.JNPMSettings;
 import org.orienteer.jnpm.RxJNPMService;
 import org.orienteer.jnpm.traversal.ITraversalRule;
 import org.orienteer.jnpm.traversal.TraversalTree;
 import org.orienteer.jnpm.traversal.TraverseDirection;
 
 import io.reactivex.Completable;
-import io.reactivex.Observable;
+import io.reactivex.Flowable;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
@@ -48,14 +49,17 @@ public class DownloadCommand implements Callable<Integer>{
 	@Override
 	public Integer call() throws Exception {
 		parent.configure();
+		JNPMSettings settings = JNPMService.instance().getSettings();
 		RxJNPMService rxService = JNPMService.instance().getRxService();
 		ITraversalRule rule = ITraversalRule.getRuleFor(getProd, getDev, getOptional, getPeer);
-		Observable<TraversalTree> observable = rxService.traverse(TraverseDirection.WIDER, rule, packageStatements)
+		Flowable<TraversalTree> flowable = rxService.traverseFlowable(TraverseDirection.WIDER, rule, 
+																	  settings.getTraversalPrefetch(), packageStatements)
 				.doOnNext(t->System.out.printf("Downloading %s@%s\n", t.getVersion().getName(), t.getVersion().getVersionAsString()));
 		if(download) {
-			observable.flatMapCompletable(this::doAction).blockingAwait();
+			//Bounded concurrency: slow downloads throttle traversal
+			flowable.flatMapCompletable(this::doAction, false, settings.getDownloadThreads()).blockingAwait();
 		} else {
-			observable.ignoreElements().blockingAwait();
+			flowable.ignoreElements().blockingAwait();
 		}
 		return 0;
 	}
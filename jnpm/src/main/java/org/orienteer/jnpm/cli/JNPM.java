@@ -2,15 +2,25 @@ package org.orienteer.jnpm.cli;
 
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
+import org.orienteer.jnpm.ExecutionModel;
 import org.orienteer.jnpm.JNPMService;
 import org.orienteer.jnpm.JNPMSettings;
+import org.orienteer.jnpm.MirrorPolicy;
+import org.orienteer.jnpm.ParsingProfile;
+import org.orienteer.jnpm.ScopedRegistry;
 
 import okhttp3.logging.HttpLoggingInterceptor.Level;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
 
 /**
  * Main class for JNPM CLI
@@ -47,6 +57,57 @@ public class JNPM implements Callable<Integer> {
 	@Option(names = {"-f", "--force"}, description = "Force to fetch remote resources even if a local copy exists on disk")
     private boolean forceDownload = false;
 	
+	@Option(names = "--abbreviated-metadata", description = "Request abbreviated packages metadata for versions resolution")
+	private boolean useAbbreviatedMetadata = false;
+	
+	@Option(names = "--parsing-profile", description = {"Profile for parsing of metadata used for versions resolution", 
+														"Valid values: ${COMPLETION-CANDIDATES}"})
+	private ParsingProfile parsingProfile;
+	
+	@Option(names = "--no-http2", description = "Don't use HTTP/2 even if registry supports it")
+	private boolean disableHttp2 = false;
+	
+	@Option(names = "--max-idle-connections", description = "Maximal number of idle connections to keep in the pool (default: ${DEFAULT-VALUE})")
+	private int maxIdleConnections = DEFAULT_SETTINGS.getMaxIdleConnections();
+	
+	@Option(names = "--keep-alive", description = "Time in seconds to keep idle connections alive (default: ${DEFAULT-VALUE})")
+	private long keepAliveDuration = DEFAULT_SETTINGS.getKeepAliveDuration();
+	
+	@Option(names = "--max-requests", description = "Maximal number of concurrent requests (default: ${DEFAULT-VALUE})")
+	private int maxRequests = DEFAULT_SETTINGS.getMaxRequests();
+	
+	@Option(names = "--max-requests-per-host", description = "Maximal number of concurrent requests per host (default: ${DEFAULT-VALUE})")
+	private int maxRequestsPerHost = DEFAULT_SETTINGS.getMaxRequestsPerHost();
+	
+	@Option(names = "--connect-timeout", description = "Connect timeout in seconds (default: ${DEFAULT-VALUE})")
+	private long connectTimeout = DEFAULT_SETTINGS.getConnectTimeout();
+	
+	@Option(names = "--read-timeout", description = "Read timeout in seconds (default: ${DEFAULT-VALUE})")
+	private long readTimeout = DEFAULT_SETTINGS.getReadTimeout();
+	
+	@Option(names = "--write-timeout", description = "Write timeout in seconds (default: ${DEFAULT-VALUE})")
+	private long writeTimeout = DEFAULT_SETTINGS.getWriteTimeout();
+	
+	@Option(names = "--mirror", description = "Mirror of the registry to be used if the registry is slow or not available (repeatable)")
+	private List<String> mirrorUrls;
+	
+	@Option(names = "--mirror-policy", description = {"Policy of selection between the registry and mirrors (default: ${DEFAULT-VALUE})", 
+														"Valid values: ${COMPLETION-CANDIDATES}"})
+	private MirrorPolicy mirrorPolicy = DEFAULT_SETTINGS.getMirrorPolicy();
+	
+	@Option(names = "--execution-model", description = {"Threads to handle metadata, downloads and extraction on (default: ${DEFAULT-VALUE})", 
+														"Valid values: ${COMPLETION-CANDIDATES}"})
+	private ExecutionModel executionModel = DEFAULT_SETTINGS.getExecutionModel();
+	
+	@Option(names = "--traversal-prefetch", description = "Number of traversed packages to be resolved ahead of downloads (default: ${DEFAULT-VALUE})")
+	private int traversalPrefetch = DEFAULT_SETTINGS.getTraversalPrefetch();
+	
+	@Option(names = "--scope-registry", description = "Registry for packages of a scope: @scope=<registryUrl> (repeatable)")
+	private Map<String, String> scopedRegistries;
+	
+	@Spec
+	private CommandSpec spec;
+	
 	public static void main(String... args) {
 		CommandLine top = new CommandLine(new JNPM());
 		int exitCode = top.execute(args);
@@ -61,7 +122,32 @@ public class JNPM implements Callable<Integer> {
 		builder.username(username).password(password);
 		if(httpLoggerLevel!=null) builder.httpLoggerLevel(httpLoggerLevel);
 		builder.useCache(!forceDownload);
-		JNPMService.configure(builder.build());
+		builder.useAbbreviatedMetadata(useAbbreviatedMetadata);
+		if(parsingProfile!=null) builder.parsingProfile(parsingProfile);
+		builder.useHttp2(!disableHttp2)
+			   .maxIdleConnections(maxIdleConnections)
+			   .keepAliveDuration(keepAliveDuration)
+			   .maxRequests(maxRequests)
+			   .maxRequestsPerHost(maxRequestsPerHost)
+			   .connectTimeout(connectTimeout)
+			   .readTimeout(readTimeout)
+			   .writeTimeout(writeTimeout)
+			   .mirrorPolicy(mirrorPolicy)
+			   .executionModel(executionModel)
+			   .traversalPrefetch(traversalPrefetch);
+		if(mirrorUrls!=null) builder.mirrorUrls(mirrorUrls);
+		if(scopedRegistries!=null) {
+			builder.scopedRegistries(scopedRegistries.entrySet().stream()
+										.map(e -> ScopedRegistry.of(e.getKey(), e.getValue()))
+										.collect(Collectors.toList()));
+		}
+		JNPMSettings settings = builder.build();
+		try {
+			settings.validate();
+		} catch (IllegalArgumentException e) {
+			throw new ParameterException(spec.commandLine(), e.getMessage(), e);
+		}
+		JNPMService.configure(settings);
 	}
 
 	@Override
@@ -0,0 +1,44 @@
+package org.orienteer.jnpm.dm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * Deserializer for versions of a package: keeps raw JSON of every version in {@link LazyVersionsMap}
+ */
+public class LazyVersionsDeserializer extends JsonDeserializer<Map<String, VersionInfo>> {
+
+	@Override
+	public Map<String, VersionInfo> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+		if(p.currentToken()!=JsonToken.START_OBJECT) {
+			p.skipChildren();
+			return null;
+		}
+		final ObjectCodec codec = p.getCodec();
+		LinkedHashMap<String, byte[]> rawVersions = new LinkedHashMap<>();
+		while(p.nextToken()==JsonToken.FIELD_NAME) {
+			String version = p.getCurrentName();
+			p.nextToken();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try(JsonGenerator generator = codec.getFactory().createGenerator(out)) {
+				generator.copyCurrentStructure(p);
+			}
+			rawVersions.put(version, out.toByteArray());
+		}
+		return new LazyVersionsMap(rawVersions, raw -> {
+			try(JsonParser versionParser = codec.getFactory().createParser(raw)) {
+				return codec.readValue(versionParser, VersionInfo.class);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.orienteer.jnpm.dm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map of versions of a package which keeps raw JSON of every version
+ * and materialize {@link VersionInfo} only when it's actually requested
+ */
+public class LazyVersionsMap extends AbstractMap<String, VersionInfo> {
+
+	/**
+	 * Function to convert raw JSON of a version into {@link VersionInfo}
+	 */
+	@FunctionalInterface
+	public static interface VersionMaterializer {
+		public VersionInfo materialize(byte[] rawVersion) throws IOException;
+	}
+
+	private final Map<String, byte[]> rawVersions;
+	private final VersionMaterializer materializer;
+	private final Map<String, VersionInfo> materialized = new ConcurrentHashMap<>();
+	private volatile boolean abbreviated = false;
+
+	/**
+	 * @param rawVersions raw JSON of versions keyed by version. Map should not be modified afterwards
+	 * @param materializer function to convert raw JSON into {@link VersionInfo}
+	 */
+	public LazyVersionsMap(LinkedHashMap<String, byte[]> rawVersions, VersionMaterializer materializer) {
+		this.rawVersions = rawVersions;
+		this.materializer = materializer;
+	}
+
+	@Override
+	public VersionInfo get(Object key) {
+		if(!rawVersions.containsKey(key)) return null;
+		return materialized.computeIfAbsent((String) key, this::materialize);
+	}
+
+	private VersionInfo materialize(String version) {
+		try {
+			VersionInfo versionInfo = materializer.materialize(rawVersions.get(version));
+			if(versionInfo!=null && abbreviated) versionInfo.setAbbreviated(true);
+			return versionInfo;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can't materialize version "+version, e);
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return rawVersions.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return rawVersions.size();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return Collections.unmodifiableSet(rawVersions.keySet());
+	}
+
+	/**
+	 * @return number of versions which were actually materialized
+	 */
+	public int getMaterializedCount() {
+		return materialized.size();
+	}
+
+	void markAbbreviated() {
+		abbreviated = true;
+		materialized.values().forEach(v -> v.setAbbreviated(true));
+	}
+
+	@Override
+	public Set<Entry<String, VersionInfo>> entrySet() {
+		return new AbstractSet<Entry<String, VersionInfo>>() {
+
+			@Override
+			public Iterator<Entry<String, VersionInfo>> iterator() {
+				final Iterator<String> keys = rawVersions.keySet().iterator();
+				return new Iterator<Entry<String, VersionInfo>>() {
+
+					@Override
+					public boolean hasNext() {
+						return keys.hasNext();
+					}
+
+					@Override
+					public Entry<String, VersionInfo> next() {
+						String key = keys.next();
+						return new SimpleImmutableEntry<>(key, get(key));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return rawVersions.size();
+			}
+		};
+	}
+
+}
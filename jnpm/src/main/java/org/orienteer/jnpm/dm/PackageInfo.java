@@ -1,13 +1,22 @@
 package org.orienteer.jnpm.dm;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
  * Data class to store package information
@@ -20,16 +29,99 @@ public class PackageInfo extends AbstractArtifactInfo {
 	private String rev;
 	@JsonProperty("dist-tags")
 	private Map<String, String> distTags;
+	@JsonDeserialize(using = LazyVersionsDeserializer.class)
 	private Map<String, VersionInfo> versions;
 	private Map<String, Date> time;
 	private Map<String, Boolean> users;
+	private Date modified;
+	@JsonIgnore
+	private boolean abbreviated;
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@ToString.Exclude
+	private transient volatile VersionIndex versionIndex;
 	
 	public Date getCreated() {
-		return getTime().get("created");
+		return time!=null?time.get("created"):null;
 	}
 	
 	public Date getModified() {
-		return getTime().get("modified");
+		return time!=null && time.containsKey("modified")?time.get("modified"):modified;
+	}
+	
+	/**
+	 * Mark this package information (and all versions) as retrieved in abbreviated form: 
+	 * only fields required for installation are available
+	 */
+	public void markAbbreviated() {
+		abbreviated = true;
+		if(versions instanceof LazyVersionsMap) ((LazyVersionsMap)versions).markAbbreviated();
+		else if(versions!=null) versions.values().forEach(v -> v.setAbbreviated(true));
+	}
+	
+	public void setVersions(Map<String, VersionInfo> versions) {
+		this.versions = versions;
+		this.versionIndex = null;
+	}
+	
+	/**
+	 * @return index of versions of this package. Index is built once and reused afterwards
+	 */
+	@JsonIgnore
+	public VersionIndex getVersionIndex() {
+		VersionIndex ret = versionIndex;
+		if(ret==null) {
+			ret = VersionIndex.build(versions!=null?versions.keySet():null);
+			versionIndex = ret;
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return list of valid versions of this package sorted in ascending order
+	 */
+	@JsonIgnore
+	public List<String> getSortedVersions() {
+		return getVersionIndex().getVersions();
+	}
+	
+	/**
+	 * Find versions which satisfy provided constraint. Only selected versions are materialized.
+	 * @param versionConstraint version range or tag
+	 * @return list of satisfying versions in ascending order
+	 */
+	public List<VersionInfo> retrieveVersions(String versionConstraint) {
+		VersionRange range = VersionRange.compile(versionConstraint);
+		if(range==null) {
+			VersionInfo tagged = getTaggedVersion(versionConstraint);
+			return tagged!=null?Collections.singletonList(tagged):Collections.emptyList();
+		}
+		VersionIndex index = getVersionIndex();
+		List<VersionInfo> ret = new ArrayList<>();
+		for (Integer i : range.allSatisfying(index)) ret.add(versions.get(index.getVersion(i)));
+		return ret;
+	}
+	
+	/**
+	 * Find the greatest version which satisfy provided constraint. Only selected version is materialized.
+	 * @param versionConstraint version range or tag
+	 * @return best matching version or null
+	 */
+	public VersionInfo bestMatch(String versionConstraint) {
+		VersionRange range = VersionRange.compile(versionConstraint);
+		if(range==null) return getTaggedVersion(versionConstraint);
+		VersionIndex index = getVersionIndex();
+		int best = range.maxSatisfying(index);
+		return best>=0?versions.get(index.getVersion(best)):null;
+	}
+	
+	/**
+	 * @param tag tag to lookup version for. For example: latest
+	 * @return version marked by the tag or null
+	 */
+	public VersionInfo getTaggedVersion(String tag) {
+		String version = distTags!=null?distTags.get(tag):null;
+		return version!=null && versions!=null?versions.get(version):null;
 	}
 	
 	public String getLatest() {
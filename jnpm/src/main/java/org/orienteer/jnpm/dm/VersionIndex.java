@@ -0,0 +1,186 @@
+package org.orienteer.jnpm.dm;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.vdurmont.semver4j.Semver;
+import com.vdurmont.semver4j.Semver.SemverType;
+import com.vdurmont.semver4j.SemverException;
+
+/**
+ * Immutable index of versions of a package: versions are parsed once, sorted in ascending order
+ * and major, minor and patch numbers are packed into a primitive array for quick lookups
+ */
+public final class VersionIndex {
+
+	public static final VersionIndex EMPTY = new VersionIndex(new Semver[0]);
+
+	private final Semver[] semvers;
+	private final String[] versions;
+	private final int[] packed;
+	private final boolean[] preRelease;
+	private final boolean[] partial;
+	private final boolean regular;
+
+	private VersionIndex(Semver[] semvers) {
+		this.semvers = semvers;
+		int size = semvers.length;
+		this.versions = new String[size];
+		this.packed = new int[size*3];
+		this.preRelease = new boolean[size];
+		this.partial = new boolean[size];
+		boolean regular = true;
+		for (int i = 0; i < size; i++) {
+			Semver semver = semvers[i];
+			versions[i] = semver.getOriginalValue();
+			packed[i*3] = semver.getMajor();
+			packed[i*3+1] = semver.getMinor()!=null?semver.getMinor():0;
+			packed[i*3+2] = semver.getPatch()!=null?semver.getPatch():0;
+			preRelease[i] = semver.getSuffixTokens().length>0;
+			partial[i] = semver.getMinor()==null || semver.getPatch()==null;
+			regular &= !partial[i];
+		}
+		this.regular = regular;
+	}
+
+	/**
+	 * Build index for provided versions. Not valid versions are skipped
+	 * @param versions versions to be indexed
+	 * @return index of versions
+	 */
+	public static VersionIndex build(Collection<String> versions) {
+		if(versions==null || versions.isEmpty()) return EMPTY;
+		List<Semver> list = new ArrayList<>(versions.size());
+		for (String version : versions) {
+			try {
+				list.add(new Semver(version, SemverType.NPM));
+			} catch (SemverException e) {
+				//Not valid versions can't be matched by ranges
+			}
+		}
+		Semver[] semvers = list.toArray(new Semver[list.size()]);
+		Arrays.sort(semvers);
+		return new VersionIndex(semvers);
+	}
+
+	public int size() {
+		return versions.length;
+	}
+
+	public String getVersion(int index) {
+		return versions[index];
+	}
+
+	public Semver getSemver(int index) {
+		return semvers[index];
+	}
+
+	public int getMajor(int index) {
+		return packed[index*3];
+	}
+
+	public int getMinor(int index) {
+		return packed[index*3+1];
+	}
+
+	public int getPatch(int index) {
+		return packed[index*3+2];
+	}
+
+	public boolean isPreRelease(int index) {
+		return preRelease[index];
+	}
+
+	/**
+	 * @param index position of a version
+	 * @return true if version at provided position doesn't have minor or patch number
+	 */
+	public boolean isPartial(int index) {
+		return partial[index];
+	}
+
+	/**
+	 * @return true if all indexed versions have major, minor and patch numbers,
+	 * so order of packed numbers is the same as order of versions
+	 */
+	public boolean isRegular() {
+		return regular;
+	}
+
+	/**
+	 * @return unmodifiable list of indexed versions in ascending order
+	 */
+	public List<String> getVersions() {
+		return new AbstractList<String>() {
+
+			@Override
+			public String get(int index) {
+				return versions[index];
+			}
+
+			@Override
+			public int size() {
+				return versions.length;
+			}
+		};
+	}
+
+	/**
+	 * Find first position of a version which is not less than provided major, minor and patch.
+	 * Result is meaningful only for {@link #isRegular()} index
+	 * @param major major number
+	 * @param minor minor number
+	 * @param patch patch number
+	 * @return position in the index or {@link #size()} if all versions are less
+	 */
+	public int lowerBound(int major, int minor, int patch) {
+		int low = 0;
+		int high = versions.length;
+		while(low<high) {
+			int mid = (low+high) >>> 1;
+			if(compareAt(mid, major, minor, patch)<0) low = mid+1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Find first position of a version which is greater than provided major, minor and patch.
+	 * Result is meaningful only for {@link #isRegular()} index
+	 * @param major major number
+	 * @param minor minor number
+	 * @param patch patch number
+	 * @return position in the index or {@link #size()} if all versions are less or equal
+	 */
+	public int upperBound(int major, int minor, int patch) {
+		int low = 0;
+		int high = versions.length;
+		while(low<high) {
+			int mid = (low+high) >>> 1;
+			if(compareAt(mid, major, minor, patch)<=0) low = mid+1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Compare version at provided position with major, minor and patch without creation of any objects
+	 * @param index position of a version
+	 * @param major major number
+	 * @param minor minor number
+	 * @param patch patch number
+	 * @return negative, zero or positive number as for {@link Comparable}
+	 */
+	public int compareAt(int index, int major, int minor, int patch) {
+		int offset = index*3;
+		int ret = Integer.compare(packed[offset], major);
+		if(ret!=0) return ret;
+		ret = Integer.compare(packed[offset+1], minor);
+		if(ret!=0) return ret;
+		return Integer.compare(packed[offset+2], patch);
+	}
+
+}
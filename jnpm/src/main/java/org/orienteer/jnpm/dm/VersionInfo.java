@@ -7,9 +7,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.compress.utils.IOUtils;
-import org.orienteer.jnpm.ILogger;
 import org.orienteer.jnpm.JNPMService;
 import org.orienteer.jnpm.JNPMSettings;
+import org.orienteer.jnpm.RxJNPMService;
 import org.orienteer.jnpm.traversal.ITraversalRule;
 import org.orienteer.jnpm.traversal.TraverseDirection;
 
@@ -23,7 +23,6 @@ import com.vdurmont.semver4j.SemverException;
 
 import io.reactivex.Completable;
 import io.reactivex.Observable;
-import io.reactivex.schedulers.Schedulers;
 import lombok.Data;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
@@ -57,6 +56,8 @@ public class VersionInfo extends AbstractArtifactInfo implements Comparable<Vers
 	private String module;
 	private String types;
 	private List<String> sideEffects;
+	@JsonIgnore
+	private boolean abbreviated;
 	
 	/*
 	 * public Single<TraversalContext> traverse(TraverseDirection direction, boolean
@@ -109,15 +110,27 @@ public class VersionInfo extends AbstractArtifactInfo implements Comparable<Vers
 	}
 	
 	public Completable downloadTarball(final boolean useCache) {
+		return downloadTarball(JNPMService.instance(), useCache);
+	}
+	
+	/**
+	 * Download tarball of this version by provided service
+	 * @param service service to download by: its settings define where tarball is stored
+	 * @param useCache true if previously downloaded tarball can be used
+	 * @return completable for download
+	 */
+	public Completable downloadTarball(final JNPMService service, final boolean useCache) {
 		return Completable.defer(() ->{
-			File file = getLocalTarball();
+			File file = getLocalTarball(service);
 			if(useCache && file.exists()) return Completable.complete();
 			else {
-				return JNPMService.instance().getRxService()
+				return service.getRxService()
 					.downloadFile(getDist().getTarball())
+					//Responses are observed on metadata threads, but bodies should be copied on download ones
+					.observeOn(service.getSchedulers().getDownload())
 					.map((r)->{
 						InputStream is = r.body().byteStream();
-						ILogger.getLogger().log("Downloading file to: "+file.getAbsolutePath());
+						service.getSettings().getLogger().log("Downloading file to: "+file.getAbsolutePath());
 						file.createNewFile();
 						FileOutputStream fos = new FileOutputStream(file);
 						IOUtils.copy(is, fos);
@@ -126,7 +139,26 @@ public class VersionInfo extends AbstractArtifactInfo implements Comparable<Vers
 						return file;
 					}).ignoreElement();
 			}
-		}).subscribeOn(Schedulers.io());
+		}).subscribeOn(service.getSchedulers().getDownload());
+	}
+	
+	/**
+	 * Abbreviated metadata doesn't contain all fields. This method allows to retrieve full version information if it's needed
+	 * @return this version if full metadata is available or full version information retrieved from the registry
+	 */
+	public VersionInfo toFullVersionInfo() {
+		return abbreviated?toFullVersionInfo(JNPMService.instance()):this;
+	}
+	
+	/**
+	 * Abbreviated metadata doesn't contain all fields. This method allows to retrieve full version information if it's needed
+	 * @param service service to retrieve full version information by
+	 * @return this version if full metadata is available or full version information retrieved from the registry
+	 */
+	public VersionInfo toFullVersionInfo(JNPMService service) {
+		if(!abbreviated) return this;
+		VersionInfo full = service.getVersionInfo(getName(), getVersionAsString());
+		return full!=null?full:this;
 	}
 	
 	public Map<String, String> getNextDependencies(ITraversalRule rule) {
@@ -134,7 +166,11 @@ public class VersionInfo extends AbstractArtifactInfo implements Comparable<Vers
 	}
 	
 	public File getLocalTarball() {
-		return JNPMService.instance().getSettings().getDownloadDirectory().resolve(getDist().getTarballName()).toFile();
+		return getLocalTarball(JNPMService.instance());
+	}
+	
+	public File getLocalTarball(JNPMService service) {
+		return service.getSettings().getDownloadDirectory().resolve(getDist().getTarballName()).toFile();
 	}
 
 	public String getVersionAsString() {
@@ -165,10 +201,19 @@ public class VersionInfo extends AbstractArtifactInfo implements Comparable<Vers
 	}
 	
 	public Observable<VersionInfo> getDependencies(ITraversalRule rule) {
+		return getDependencies(JNPMService.instance().getRxService(), rule);
+	}
+	
+	/**
+	 * @param service service to resolve dependencies by
+	 * @param rule rule to select dependencies
+	 * @return best matching versions of selected dependencies
+	 */
+	public Observable<VersionInfo> getDependencies(RxJNPMService service, ITraversalRule rule) {
 		Map<String, String> toDownload = rule.getNextDependencies(this);
 		return Observable.fromIterable(toDownload.entrySet())
-			.flatMapMaybe(e-> JNPMService.instance().getRxService()
-							.bestMatch(e.getKey(), e.getValue()));
+			.flatMap(e-> service.bestMatch(e.getKey(), e.getValue()).toObservable(),
+					 RxJNPMService.DEFAULT_RESOLUTION_WINDOW);
 	}
 
 	@Override
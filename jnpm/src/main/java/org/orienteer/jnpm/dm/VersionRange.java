@@ -0,0 +1,353 @@
+package org.orienteer.jnpm.dm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.vdurmont.semver4j.Range;
+import com.vdurmont.semver4j.Range.RangeOperator;
+import com.vdurmont.semver4j.Requirement;
+import com.vdurmont.semver4j.Semver;
+import com.vdurmont.semver4j.Semver.SemverType;
+
+/**
+ * Compiled NPM version range. Common ranges (exact versions, comparators, x-ranges, caret, tilde and hyphen ranges)
+ * are compiled into numeric bounds which are checked against {@link VersionIndex} without creation of any objects.
+ * Other ranges are checked by {@link Requirement}. Compiled ranges are cached by range text.
+ */
+public final class VersionRange {
+
+	private static final int MAX_CACHE_SIZE = 10000;
+	private static final VersionRange NOT_A_RANGE = new VersionRange(null, null, null);
+	private static final ConcurrentMap<String, VersionRange> CACHE = new ConcurrentHashMap<>();
+
+	private static final Pattern OPERATOR_SPACE = Pattern.compile("(>=|<=|>|<|=|\\^|~)\\s+");
+	private static final Pattern HYPHEN = Pattern.compile("(\\S+)\\s+-\\s+(\\S+)");
+	private static final Pattern COMPARATOR = Pattern.compile("(>=|<=|>|<|=|\\^|~)?(.+)");
+	private static final String NUMBER = "(0|[1-9]\\d{0,8})";
+	private static final String NUMBER_OR_WILDCARD = "(0|[1-9]\\d{0,8}|[xX*])";
+	private static final Pattern FULL = Pattern.compile(NUMBER+"\\."+NUMBER+"\\."+NUMBER+"(?:-[A-Za-z][0-9A-Za-z.]*)?");
+	private static final Pattern PARTIAL = Pattern.compile(NUMBER+"(?:\\."+NUMBER_OR_WILDCARD+"(?:\\."+NUMBER_OR_WILDCARD+")?)?");
+
+	private final String constraint;
+	private final Requirement requirement;
+	private final RangeSet[] sets;
+	private final String exactVersion;
+
+	private VersionRange(String constraint, Requirement requirement, RangeSet[] sets) {
+		this.constraint = constraint;
+		this.requirement = requirement;
+		this.sets = sets;
+		this.exactVersion = sets!=null && sets.length==1 && sets[0].bounds.length==1
+								&& sets[0].bounds[0].op==RangeOperator.EQ
+								?sets[0].bounds[0].version:null;
+	}
+
+	/**
+	 * Compile version constraint or take already compiled one from the cache
+	 * @param versionConstraint text representation of version constraint
+	 * @return compiled range or null if constraint is not a range: for example, it's a tag
+	 */
+	public static VersionRange compile(String versionConstraint) {
+		if(versionConstraint==null) return null;
+		VersionRange ret = CACHE.get(versionConstraint);
+		if(ret==null) {
+			ret = doCompile(versionConstraint);
+			if(CACHE.size()>=MAX_CACHE_SIZE) CACHE.clear();
+			CACHE.putIfAbsent(versionConstraint, ret);
+		}
+		return ret!=NOT_A_RANGE?ret:null;
+	}
+
+	private static VersionRange doCompile(String versionConstraint) {
+		//Requirement.buildNPM treats 'latest' as any version, but actually it's a tag
+		if("latest".equals(versionConstraint.trim())) return NOT_A_RANGE;
+		Requirement requirement;
+		try {
+			requirement = Requirement.buildNPM(versionConstraint);
+		} catch (RuntimeException e) {
+			return NOT_A_RANGE;
+		}
+		String[] parts = versionConstraint.split("\\|\\|", -1);
+		RangeSet[] sets = new RangeSet[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			sets[i] = compileSet(parts[i]);
+			if(sets[i]==null) {
+				sets = null;
+				break;
+			}
+		}
+		return new VersionRange(versionConstraint, requirement, sets);
+	}
+
+	private static RangeSet compileSet(String set) {
+		set = OPERATOR_SPACE.matcher(set.trim()).replaceAll("$1");
+		if(set.isEmpty()) return null;
+		List<Bound> bounds = new ArrayList<>();
+		Matcher hyphen = HYPHEN.matcher(set);
+		if(hyphen.matches()) {
+			if(!FULL.matcher(hyphen.group(1)).matches() || !FULL.matcher(hyphen.group(2)).matches()) return null;
+			bounds.add(new Bound(RangeOperator.GTE, new Semver(hyphen.group(1), SemverType.NPM)));
+			bounds.add(new Bound(RangeOperator.LTE, new Semver(hyphen.group(2), SemverType.NPM)));
+		} else {
+			for (String token : set.split("\\s+")) {
+				if(!compileComparator(token, bounds)) return null;
+			}
+		}
+		return new RangeSet(bounds.toArray(new Bound[bounds.size()]));
+	}
+
+	private static boolean compileComparator(String token, List<Bound> bounds) {
+		Matcher comparator = COMPARATOR.matcher(token);
+		if(!comparator.matches()) return false;
+		String op = comparator.group(1);
+		String version = comparator.group(2);
+		Matcher full = FULL.matcher(version);
+		if(full.matches()) {
+			Semver semver = new Semver(version, SemverType.NPM);
+			int major = semver.getMajor();
+			int minor = semver.getMinor();
+			int patch = semver.getPatch();
+			if(op==null || "=".equals(op)) bounds.add(new Bound(RangeOperator.EQ, semver));
+			else if(">=".equals(op)) bounds.add(new Bound(RangeOperator.GTE, semver));
+			else if(">".equals(op)) bounds.add(new Bound(RangeOperator.GT, semver));
+			else if("<=".equals(op)) bounds.add(new Bound(RangeOperator.LTE, semver));
+			else if("<".equals(op)) bounds.add(new Bound(RangeOperator.LT, semver));
+			else if("^".equals(op)) {
+				bounds.add(new Bound(RangeOperator.GTE, semver));
+				if(major>0) bounds.add(new Bound(RangeOperator.LT, major+1, 0, 0));
+				else if(minor>0) bounds.add(new Bound(RangeOperator.LT, 0, minor+1, 0));
+				else bounds.add(new Bound(RangeOperator.LT, 0, 0, patch+1));
+			} else {
+				bounds.add(new Bound(RangeOperator.GTE, semver));
+				bounds.add(new Bound(RangeOperator.LT, major, minor+1, 0));
+			}
+			return true;
+		}
+		if(op!=null && !"^".equals(op) && !"~".equals(op)) return false;
+		if(op==null && "*".equals(version)) {
+			bounds.add(new Bound(RangeOperator.GTE, 0, 0, 0));
+			return true;
+		}
+		Matcher partial = PARTIAL.matcher(version);
+		if(!partial.matches()) return false;
+		int major = Integer.parseInt(partial.group(1));
+		boolean hasMinor = isNumber(partial.group(2));
+		if(!hasMinor && isNumber(partial.group(3))) return false;
+		if(hasMinor) {
+			int minor = Integer.parseInt(partial.group(2));
+			bounds.add(new Bound(RangeOperator.GTE, major, minor, 0));
+			if("^".equals(op) && major>0) bounds.add(new Bound(RangeOperator.LT, major+1, 0, 0));
+			else bounds.add(new Bound(RangeOperator.LT, major, minor+1, 0));
+		} else {
+			bounds.add(new Bound(RangeOperator.GTE, major, 0, 0));
+			bounds.add(new Bound(RangeOperator.LT, major+1, 0, 0));
+		}
+		return true;
+	}
+
+	private static boolean isNumber(String value) {
+		return value!=null && !value.isEmpty() && Character.isDigit(value.charAt(0));
+	}
+
+	/**
+	 * Drop all compiled ranges from the cache
+	 */
+	public static void clearCache() {
+		CACHE.clear();
+	}
+
+	/**
+	 * @return number of cached ranges including cached constraints which are not ranges
+	 */
+	public static int getCacheSize() {
+		return CACHE.size();
+	}
+
+	public String getConstraint() {
+		return constraint;
+	}
+
+	public Requirement getRequirement() {
+		return requirement;
+	}
+
+	/**
+	 * @return true if range pins a single version: for example, 1.2.3 or =1.2.3-beta.1
+	 */
+	public boolean isExactVersion() {
+		return exactVersion!=null;
+	}
+
+	/**
+	 * @return pinned version or null if range is not an exact version
+	 */
+	public String getExactVersion() {
+		return exactVersion;
+	}
+
+	/**
+	 * @return true if range was compiled into numeric bounds and doesn't require {@link Requirement} for checks
+	 */
+	public boolean isCompiled() {
+		return sets!=null;
+	}
+
+	public boolean isSatisfiedBy(Semver version) {
+		return version!=null && requirement.isSatisfiedBy(version);
+	}
+
+	/**
+	 * Check version at provided position of the index
+	 * @param index index of versions
+	 * @param position position of a version
+	 * @return true if version satisfies this range
+	 */
+	public boolean isSatisfiedBy(VersionIndex index, int position) {
+		if(sets==null || index.isPartial(position)) return requirement.isSatisfiedBy(index.getSemver(position));
+		for (RangeSet set : sets) {
+			if(set.isSatisfiedBy(index, position)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Find the greatest version which satisfy this range.
+	 * Compiled ranges check only versions between bounds found by bisection.
+	 * @param index index of versions
+	 * @return position in the index or -1 if nothing satisfies
+	 */
+	public int maxSatisfying(VersionIndex index) {
+		if(sets==null || !index.isRegular()) {
+			for(int i=index.size()-1; i>=0; i--) {
+				if(isSatisfiedBy(index, i)) return i;
+			}
+			return -1;
+		}
+		int best = -1;
+		for (RangeSet set : sets) {
+			int high = set.upper!=null?index.upperBound(set.upper.major, set.upper.minor, set.upper.patch)-1
+									  :index.size()-1;
+			int low = set.lower!=null?index.lowerBound(set.lower.major, set.lower.minor, set.lower.patch)
+									 :0;
+			for(int i=high; i>=low && i>best; i--) {
+				if(set.isSatisfiedBy(index, i)) {
+					best = i;
+					break;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Find all versions which satisfy this range
+	 * @param index index of versions
+	 * @return positions of satisfying versions in ascending order
+	 */
+	public List<Integer> allSatisfying(VersionIndex index) {
+		List<Integer> ret = new ArrayList<>();
+		for(int i=0; i<index.size(); i++) {
+			if(isSatisfiedBy(index, i)) ret.add(i);
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return constraint;
+	}
+
+	/**
+	 * Set of bounds joined by AND. As in {@link Requirement}, pre-release versions satisfy a set of several bounds
+	 * only if one of the bounds is a pre-release of the same major, minor and patch
+	 */
+	private static final class RangeSet {
+		private final Bound[] bounds;
+		private final Bound[] preReleaseBounds;
+		private final Bound lower;
+		private final Bound upper;
+
+		RangeSet(Bound[] bounds) {
+			this.bounds = bounds;
+			List<Bound> preReleaseBounds = new ArrayList<>();
+			Bound lower = null;
+			Bound upper = null;
+			for (Bound bound : bounds) {
+				if(bound.preRelease) preReleaseBounds.add(bound);
+				if(bound.op!=RangeOperator.LT && bound.op!=RangeOperator.LTE
+						&& (lower==null || bound.compareTo(lower)>0)) lower = bound;
+				if(bound.op!=RangeOperator.GT && bound.op!=RangeOperator.GTE
+						&& (upper==null || bound.compareTo(upper)<0)) upper = bound;
+			}
+			this.preReleaseBounds = preReleaseBounds.toArray(new Bound[preReleaseBounds.size()]);
+			this.lower = lower;
+			this.upper = upper;
+		}
+
+		boolean isSatisfiedBy(VersionIndex index, int position) {
+			for (Bound bound : bounds) {
+				if(!bound.isSatisfiedBy(index, position)) return false;
+			}
+			if(bounds.length>1 && index.isPreRelease(position)) {
+				for (Bound bound : preReleaseBounds) {
+					if(index.compareAt(position, bound.major, bound.minor, bound.patch)==0) return true;
+				}
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Single comparator: major, minor and patch are used for quick checks
+	 * and {@link Range} is used only if they are equal to numbers of a version
+	 */
+	private static final class Bound {
+		private final RangeOperator op;
+		private final int major;
+		private final int minor;
+		private final int patch;
+		private final boolean preRelease;
+		private final String version;
+		private final Range range;
+
+		Bound(RangeOperator op, int major, int minor, int patch) {
+			this(op, new Semver(major+"."+minor+"."+patch, SemverType.NPM));
+		}
+
+		Bound(RangeOperator op, Semver version) {
+			this.op = op;
+			this.major = version.getMajor();
+			this.minor = version.getMinor();
+			this.patch = version.getPatch();
+			this.preRelease = version.getSuffixTokens().length>0;
+			this.version = version.getOriginalValue();
+			this.range = new Range(version, op);
+		}
+
+		int compareTo(Bound other) {
+			if(major!=other.major) return Integer.compare(major, other.major);
+			if(minor!=other.minor) return Integer.compare(minor, other.minor);
+			return Integer.compare(patch, other.patch);
+		}
+
+		boolean isSatisfiedBy(VersionIndex index, int position) {
+			int cmp = index.compareAt(position, major, minor, patch);
+			if(cmp==0) return range.isSatisfiedBy(index.getSemver(position));
+			switch (op) {
+				case GT:
+				case GTE:
+					return cmp>0;
+				case LT:
+				case LTE:
+					return cmp<0;
+				default:
+					return false;
+			}
+		}
+	}
+}
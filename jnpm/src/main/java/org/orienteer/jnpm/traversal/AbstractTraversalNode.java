@@ -3,7 +3,7 @@ package org.orienteer.jnpm.traversal;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.orienteer.jnpm.dm.VersionInfo;
@@ -25,6 +25,11 @@ public abstract class AbstractTraversalNode {
 	@Getter(AccessLevel.NONE)
 	protected Map<VersionInfo, TraversalTree> modifiableChildren = new ConcurrentHashMap<VersionInfo, TraversalTree>();
 	private Collection<TraversalTree> children = Collections.unmodifiableCollection(modifiableChildren.values());
+	/**
+	 * Index of children: name of a package to versions of the package among children
+	 */
+	@Getter(AccessLevel.NONE)
+	private Map<String, Set<String>> childrenVersions = new ConcurrentHashMap<String, Set<String>>();
 	@NonFinal
 	protected int level;
 	protected ITraversalRule rule;
@@ -45,18 +50,35 @@ public abstract class AbstractTraversalNode {
 		return true;
 	}
 	
+	protected void addChild(VersionInfo version, TraversalTree tree) {
+		//Map keeps the first key, so only new keys are indexed
+		if(modifiableChildren.put(version, tree)==null) {
+			childrenVersions.computeIfAbsent(version.getName(), n -> ConcurrentHashMap.newKeySet())
+							.add(version.getVersionAsString());
+		}
+	}
+	
 	protected AbstractTraversalNode findProperParent(VersionInfo version) {
 		AbstractTraversalNode ret = null;
 		if(parent!=null) {
 			ret = parent.findProperParent(version);
 			if(ret!=null) return ret;
 		}
-		Optional<VersionInfo> found = modifiableChildren.keySet().stream()
-												.filter(v -> 
-															version.getName().equals(v.getName())
-															&& !version.getVersionAsString().equals(v.getVersionAsString()))
-												.findAny();
-		return found.isPresent()?null:this;
+		return hasOtherVersionOf(version)?null:this;
+	}
+	
+	/**
+	 * @param version version to check
+	 * @return true if there is a child for the same package, but of another version
+	 */
+	protected boolean hasOtherVersionOf(VersionInfo version) {
+		Set<String> versions = childrenVersions.get(version.getName());
+		if(versions==null) return false;
+		String versionAsString = version.getVersionAsString();
+		for (String v : versions) {
+			if(!versionAsString.equals(v)) return true;
+		}
+		return false;
 	}
 	
 	public abstract TraversalContext getContext();
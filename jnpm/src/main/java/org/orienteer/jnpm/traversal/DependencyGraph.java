@@ -0,0 +1,288 @@
+package org.orienteer.jnpm.traversal;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.orienteer.jnpm.JNPMService;
+import org.orienteer.jnpm.RxJNPMService;
+import org.orienteer.jnpm.dm.VersionInfo;
+
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+/**
+ * Compact representation of resolved dependencies: versions are interned into int ids
+ * and dependencies are stored as primitive adjacency arrays (compressed sparse rows).
+ * Only names and versions are kept: {@link VersionInfo}s, except of roots, are requested from the service
+ * and {@link TraversalTree}s are created only on demand by {@link #traverse()}.
+ */
+public final class DependencyGraph {
+
+	private final RxJNPMService service;
+	private final String[] packageNames;
+	private final int[] packageOf;
+	private final String[] versions;
+	private final int[] offsets;
+	private final int[] dependencies;
+	private final VersionInfo[] roots;
+	private final ITraversalRule rule;
+
+	private DependencyGraph(RxJNPMService service, String[] packageNames, int[] packageOf, String[] versions,
+							int[] offsets, int[] dependencies, VersionInfo[] roots, ITraversalRule rule) {
+		this.service = service;
+		this.packageNames = packageNames;
+		this.packageOf = packageOf;
+		this.versions = versions;
+		this.offsets = offsets;
+		this.dependencies = dependencies;
+		this.roots = roots;
+		this.rule = rule;
+	}
+
+	/**
+	 * Resolve all dependencies of provided roots level by level
+	 * @param service service to resolve dependencies by
+	 * @param rule rule to select dependencies of roots: only {@link ITraversalRule#DEPENDENCIES} are used deeper
+	 * @param maxConcurrency maximal number of dependencies to be resolved concurrently
+	 * @param roots versions to start from
+	 * @return graph of resolved dependencies
+	 */
+	public static Single<DependencyGraph> build(RxJNPMService service, ITraversalRule rule, int maxConcurrency,
+												VersionInfo... roots) {
+		return Single.defer(() -> {
+			Builder builder = new Builder(service, rule, maxConcurrency);
+			for (VersionInfo root : roots) builder.intern(root);
+			builder.roots = builder.pending.toArray(new VersionInfo[builder.pending.size()]);
+			return builder.expand(0).andThen(Single.fromCallable(builder::build));
+		});
+	}
+
+	/**
+	 * @return number of versions in the graph
+	 */
+	public int size() {
+		return versions.length;
+	}
+
+	/**
+	 * @return number of distinct packages in the graph
+	 */
+	public int getPackagesCount() {
+		return packageNames.length;
+	}
+
+	/**
+	 * @return number of dependencies between versions
+	 */
+	public int getEdgesCount() {
+		return dependencies.length;
+	}
+
+	/**
+	 * @return ids of roots
+	 */
+	public IntStream getRoots() {
+		return IntStream.range(0, roots.length);
+	}
+
+	public String getPackageName(int id) {
+		return packageNames[packageOf[id]];
+	}
+
+	public String getVersionAsString(int id) {
+		return versions[id];
+	}
+
+	/**
+	 * @param id id of a version
+	 * @return information about the version: requested from the service for everything except roots
+	 */
+	public Maybe<VersionInfo> getVersionInfo(int id) {
+		return id<roots.length?Maybe.just(roots[id]):service.getVersionInfo(getPackageName(id), versions[id]);
+	}
+
+	/**
+	 * @param id id of a version
+	 * @return ids of versions this version depends on
+	 */
+	public IntStream getDependencies(int id) {
+		return Arrays.stream(dependencies, offsets[id], offsets[id+1]);
+	}
+
+	/**
+	 * @return tree views bound to the default {@link JNPMService}
+	 * @see #traverse(JNPMService)
+	 */
+	public Observable<TraversalTree> traverse() {
+		return traverse(null);
+	}
+
+	/**
+	 * Create {@link TraversalTree} views of the graph in the same order and with the same structure
+	 * as {@link TraverseDirection#WIDER} traversal. Registry is not called.
+	 * @param service service for views to download and install packages by or null for default one
+	 * @return tree views of the graph
+	 */
+	public Observable<TraversalTree> traverse(JNPMService service) {
+		return Observable.defer(() -> {
+			TraversalContext ctx = new TraversalContext(service, TraverseDirection.WIDER, rule, roots);
+			List<TraversalTree> frontier = new ArrayList<>(ctx.getChildren());
+			Map<VersionInfo, Integer> rootIds = new HashMap<>();
+			for (int i = 0; i < roots.length; i++) rootIds.putIfAbsent(roots[i], i);
+			int[] ids = new int[frontier.size()];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = rootIds.get(frontier.get(i).getVersion());
+				frontier.get(i).commit();
+			}
+			return Observable.fromIterable(frontier).concatWith(traverseLevel(frontier, ids));
+		});
+	}
+
+	private Observable<TraversalTree> traverseLevel(List<TraversalTree> frontier, int[] ids) {
+		return Observable.defer(() -> {
+			List<Map.Entry<TraversalTree, Integer>> edges = new ArrayList<>();
+			for (int i = 0; i < ids.length; i++) {
+				TraversalTree node = frontier.get(i);
+				if(!node.isTraversableDeeper()) continue;
+				for (int j = offsets[ids[i]]; j < offsets[ids[i]+1]; j++) {
+					edges.add(new SimpleImmutableEntry<>(node, dependencies[j]));
+				}
+			}
+			if(edges.isEmpty()) return Observable.empty();
+			//Versions of the level are requested eagerly, but views are committed in order of the edges
+			return Observable.fromIterable(edges)
+						.concatMapEager(e -> getVersionInfo(e.getValue())
+												.toSingle()
+												.toObservable()
+												.map(v -> new SimpleImmutableEntry<>(e.getKey(), v)))
+						.map(e -> e.getKey().subTreeFor(e.getValue()).commit())
+						.toList()
+						.flatMapObservable(next -> Observable.fromIterable(next)
+										.concatWith(traverseLevel(next, edges.stream()
+																		.mapToInt(Map.Entry::getValue)
+																		.toArray())));
+		});
+	}
+
+	@Override
+	public String toString() {
+		return "DependencyGraph("+size()+" versions, "+getEdgesCount()+" dependencies)";
+	}
+
+	/**
+	 * Mutable state for building of a graph: versions are expanded in order of their ids,
+	 * so adjacency rows are appended one after another. {@link VersionInfo} is kept only
+	 * until row of the version is added
+	 */
+	private static class Builder {
+		private final RxJNPMService service;
+		private final ITraversalRule rule;
+		private final int maxConcurrency;
+		private final Map<String, Integer> packageIds = new HashMap<>();
+		private final List<String> packageNames = new ArrayList<>();
+		private final List<Map<String, Integer>> versionIds = new ArrayList<>();
+		private final List<String> versions = new ArrayList<>();
+		private final List<VersionInfo> pending = new ArrayList<>();
+		private final Map<Map.Entry<String, String>, Integer> resolvedEdges = new HashMap<>();
+		private VersionInfo[] roots;
+		private int[] packageOf = new int[64];
+		private int[] offsets = new int[65];
+		private int[] dependencies = new int[256];
+		private int edges;
+
+		Builder(RxJNPMService service, ITraversalRule rule, int maxConcurrency) {
+			this.service = service;
+			this.rule = rule;
+			this.maxConcurrency = maxConcurrency;
+		}
+
+		int intern(VersionInfo version) {
+			Integer packageId = packageIds.get(version.getName());
+			if(packageId==null) {
+				packageId = packageNames.size();
+				packageIds.put(version.getName(), packageId);
+				packageNames.add(version.getName());
+				versionIds.add(new HashMap<>());
+			}
+			Map<String, Integer> ids = versionIds.get(packageId);
+			Integer id = ids.get(version.getVersionAsString());
+			if(id!=null) return id;
+			id = versions.size();
+			if(id==packageOf.length) packageOf = Arrays.copyOf(packageOf, id*2);
+			packageOf[id] = packageId;
+			versions.add(version.getVersionAsString());
+			pending.add(version);
+			ids.put(version.getVersionAsString(), id);
+			return id;
+		}
+
+		Completable expand(int from) {
+			return Completable.defer(() -> {
+				int to = versions.size();
+				if(from>=to) return Completable.complete();
+				Set<Map.Entry<String, String>> toResolve = new LinkedHashSet<>();
+				for (int id = from; id < to; id++) {
+					for (Map.Entry<String, String> e : getNextDependencies(id).entrySet()) {
+						Map.Entry<String, String> edge = new SimpleImmutableEntry<>(e.getKey(), e.getValue());
+						if(!resolvedEdges.containsKey(edge)) toResolve.add(edge);
+					}
+				}
+				return Observable.fromIterable(toResolve)
+							.flatMap(e -> service.bestMatch(e.getKey(), e.getValue())
+										.map(v -> new SimpleImmutableEntry<>(e, v))
+										.toObservable(),
+									 maxConcurrency)
+							.toMap(Map.Entry::getKey, Map.Entry::getValue)
+							.flatMapCompletable(resolved -> {
+								//Interned in order of edges, so ids don't depend on order of responses
+								for (Map.Entry<String, String> e : toResolve) {
+									VersionInfo version = resolved.get(e);
+									resolvedEdges.put(e, version!=null?intern(version):-1);
+								}
+								for (int id = from; id < to; id++) addRow(id);
+								return expand(to);
+							});
+			});
+		}
+
+		private Map<String, String> getNextDependencies(int id) {
+			return pending.get(id).getNextDependencies(id<roots.length?rule:ITraversalRule.DEPENDENCIES);
+		}
+
+		private void addRow(int id) {
+			if(id+1>=offsets.length) offsets = Arrays.copyOf(offsets, offsets.length*2);
+			int start = offsets[id];
+			for (Map.Entry<String, String> e : getNextDependencies(id).entrySet()) {
+				int dependency = resolvedEdges.get(new SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+				if(dependency<0) continue;
+				//Several constraints might be resolved to the same version
+				boolean present = false;
+				for (int i = start; i < edges && !present; i++) present = dependencies[i]==dependency;
+				if(present) continue;
+				if(edges==dependencies.length) dependencies = Arrays.copyOf(dependencies, edges*2);
+				dependencies[edges++] = dependency;
+			}
+			offsets[id+1] = edges;
+			pending.set(id, null);
+		}
+
+		DependencyGraph build() {
+			int size = versions.size();
+			return new DependencyGraph(service, packageNames.toArray(new String[packageNames.size()]),
+									   Arrays.copyOf(packageOf, size),
+									   versions.toArray(new String[size]),
+									   Arrays.copyOf(offsets, size+1),
+									   Arrays.copyOf(dependencies, edges),
+									   roots, rule);
+		}
+	}
+}
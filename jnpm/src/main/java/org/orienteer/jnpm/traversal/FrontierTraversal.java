@@ -0,0 +1,121 @@
+package org.orienteer.jnpm.traversal;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.orienteer.jnpm.dm.VersionInfo;
+
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+/**
+ * Level by level traversal for {@link TraverseDirection#WIDER}: keeps explicit frontier of packages of the same level,
+ * resolves distinct dependencies of the whole frontier in one batch and commits next level in deterministic order:
+ * in order of the frontier and then in order of dependencies of each package
+ */
+public final class FrontierTraversal {
+
+	private FrontierTraversal() {
+	}
+
+	/**
+	 * @param ctx context with roots to traverse from
+	 * @param maxConcurrency maximal number of dependencies to be resolved concurrently
+	 * @return traversed nodes: roots first and then level by level
+	 */
+	public static Observable<TraversalTree> traverse(TraversalContext ctx, int maxConcurrency) {
+		return Observable.defer(() -> {
+			List<TraversalTree> roots = new ArrayList<>(ctx.getChildren());
+			for (TraversalTree root : roots) root.commit();
+			return Observable.fromIterable(roots)
+						.concatWith(traverseLevel(ctx, roots, maxConcurrency));
+		});
+	}
+
+	/**
+	 * Traversal with backpressure: next level is resolved only when the current one is requested completely
+	 * @param ctx context with roots to traverse from
+	 * @param maxConcurrency maximal number of dependencies to be resolved concurrently
+	 * @return traversed nodes: roots first and then level by level
+	 */
+	public static Flowable<TraversalTree> traverseFlowable(TraversalContext ctx, int maxConcurrency) {
+		return Flowable.defer(() -> {
+			List<TraversalTree> roots = new ArrayList<>(ctx.getChildren());
+			for (TraversalTree root : roots) root.commit();
+			return Flowable.fromIterable(roots)
+						.concatWith(Flowable.defer(() -> traverseLevelFlowable(ctx, roots, maxConcurrency)));
+		});
+	}
+
+	private static Observable<TraversalTree> traverseLevel(TraversalContext ctx, List<TraversalTree> frontier,
+															int maxConcurrency) {
+		return nextLevel(ctx, frontier, maxConcurrency)
+					.flatMapObservable(next -> next.isEmpty()
+												?Observable.<TraversalTree>empty()
+												:Observable.fromIterable(next)
+													.concatWith(traverseLevel(ctx, next, maxConcurrency)));
+	}
+
+	private static Flowable<TraversalTree> traverseLevelFlowable(TraversalContext ctx, List<TraversalTree> frontier,
+																int maxConcurrency) {
+		return nextLevel(ctx, frontier, maxConcurrency)
+					.flatMapPublisher(next -> next.isEmpty()
+												?Flowable.<TraversalTree>empty()
+												:Flowable.fromIterable(next)
+													.concatWith(Flowable.defer(() -> 
+														traverseLevelFlowable(ctx, next, maxConcurrency))));
+	}
+
+	/**
+	 * Resolve dependencies of the frontier and commit them
+	 * @return committed next level: empty if there is nothing to traverse deeper
+	 */
+	private static Single<List<TraversalTree>> nextLevel(TraversalContext ctx, List<TraversalTree> frontier,
+														int maxConcurrency) {
+		return Single.defer(() -> {
+			//Repeated edges are answered by the context without calling the service
+			Map<Map.Entry<String, String>, Maybe<VersionInfo>> edges = new LinkedHashMap<>();
+			for (TraversalTree node : frontier) {
+				if(!node.isTraversableDeeper()) continue;
+				for (Map.Entry<String, String> edge : getEdges(node)) {
+					edges.computeIfAbsent(edge, e -> ctx.resolve(e.getKey(), e.getValue()));
+				}
+			}
+			if(edges.isEmpty()) return Single.just(Collections.<TraversalTree>emptyList());
+			return Observable.fromIterable(edges.entrySet())
+						.flatMap(edge -> edge.getValue()
+											.map(v -> new SimpleImmutableEntry<Map.Entry<String, String>, VersionInfo>(edge.getKey(), v))
+											.toObservable(),
+								 maxConcurrency)
+						.toMap(Map.Entry::getKey, Map.Entry::getValue)
+						.map(resolved -> {
+							List<TraversalTree> next = new ArrayList<>();
+							for (TraversalTree node : frontier) {
+								if(!node.isTraversableDeeper()) continue;
+								for (Map.Entry<String, String> edge : getEdges(node)) {
+									VersionInfo version = resolved.get(edge);
+									//Several constraints might be resolved to the same version
+									if(version==null || node.getDependency(version)!=null) continue;
+									next.add(node.subTreeFor(version).commit());
+								}
+							}
+							return next;
+						});
+		});
+	}
+
+	private static List<Map.Entry<String, String>> getEdges(TraversalTree node) {
+		Map<String, String> dependencies = node.getVersion().getNextDependencies(node.getRule());
+		List<Map.Entry<String, String>> ret = new ArrayList<>(dependencies.size());
+		for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+			ret.add(new SimpleImmutableEntry<>(dependency.getKey(), dependency.getValue()));
+		}
+		return ret;
+	}
+}
@@ -4,12 +4,17 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.orienteer.jnpm.JNPMService;
 import org.orienteer.jnpm.dm.VersionInfo;
 
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
 
 /**
@@ -19,14 +24,41 @@ import lombok.Value;
 public class TraversalContext extends AbstractTraversalNode {
 	private TraverseDirection direction;
 	
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private JNPMService service;
+	
 	@Getter(AccessLevel.NONE)
 	private Map<VersionInfo, TraversalTree> traversed = new ConcurrentHashMap<VersionInfo, TraversalTree>();
 	
+	//Caches of the traversal change while it goes, so they are not part of its identity
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private Map<String, Maybe<VersionInfo>> resolvedEdges = new ConcurrentHashMap<String, Maybe<VersionInfo>>();
+	
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private AtomicLong shortCircuitedEdges = new AtomicLong();
+	
 	public TraversalContext(TraverseDirection direction, ITraversalRule rule, VersionInfo... roots) {
+		this(null, direction, rule, roots);
+	}
+	
+	/**
+	 * @param service service to retrieve and download packages by or null to use default {@link JNPMService#instance()}
+	 * @param direction direction of the traversal
+	 * @param rule rule to select dependencies to traverse
+	 * @param roots packages to start traversal from
+	 */
+	public TraversalContext(JNPMService service, TraverseDirection direction, ITraversalRule rule, VersionInfo... roots) {
 		super(rule);
+		this.service = service;
 		this.direction = direction;
 		for (VersionInfo versionInfo : roots) {
-			this.modifiableChildren.put(versionInfo, new TraversalTree(this, null, versionInfo, rule));
+			addChild(versionInfo, new TraversalTree(this, null, versionInfo, rule));
 		}
 		this.level=-1;
 	}
@@ -40,10 +72,47 @@ public class TraversalContext extends AbstractTraversalNode {
 		traversed.putIfAbsent(version, tree);
 	}
 	
+	/**
+	 * Resolve dependency edge: every distinct edge is resolved only once per traversal,
+	 * so repeated edges are answered without calling the service. Errors are not remembered
+	 * @param packageName name of the dependency
+	 * @param versionConstraint version constraint of the dependency
+	 * @return best matching version
+	 */
+	public Maybe<VersionInfo> resolve(String packageName, String versionConstraint) {
+		String key = packageName+"@"+versionConstraint;
+		Maybe<VersionInfo> resolved = resolvedEdges.get(key);
+		if(resolved==null) {
+			//Failed resolution is forgotten to let next occurrence of the edge retry it.
+			//Callback is before cache(), so it's called once and only while this resolution is registered
+			Maybe<VersionInfo> resolution = getService().getRxService().bestMatch(packageName, versionConstraint)
+												.doOnError(e -> resolvedEdges.remove(key))
+												.cache();
+			resolved = resolvedEdges.putIfAbsent(key, resolution);
+			if(resolved==null) return resolution;
+		}
+		shortCircuitedEdges.incrementAndGet();
+		return resolved;
+	}
+	
+	/**
+	 * @return statistics of this traversal
+	 */
+	public TraversalStats getStats() {
+		return new TraversalStats(resolvedEdges.size(), shortCircuitedEdges.get(), traversed.size());
+	}
+	
 	public Set<VersionInfo> getTraversed() {
 		return Collections.unmodifiableSet(traversed.keySet());
 	}
 	
+	/**
+	 * @return service which is used for this traversal
+	 */
+	public JNPMService getService() {
+		return service!=null?service:JNPMService.instance();
+	}
+	
 	@Override
 	public Observable<TraversalTree> getNextTraversalNodes() {
 		return Observable.fromIterable(getChildren());
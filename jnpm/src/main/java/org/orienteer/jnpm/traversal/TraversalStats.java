@@ -0,0 +1,29 @@
+package org.orienteer.jnpm.traversal;
+
+import lombok.Value;
+
+/**
+ * Snapshot of statistics of a traversal
+ */
+@Value
+public class TraversalStats {
+	/**
+	 * Number of distinct (name, version constraint) edges resolved through the service
+	 */
+	private long resolvedEdges;
+	/**
+	 * Number of edges answered by previous resolution of the same edge without calling the service
+	 */
+	private long shortCircuitedEdges;
+	/**
+	 * Number of distinct versions traversed
+	 */
+	private int traversedVersions;
+
+	/**
+	 * @return number of edges looked up through the context: frontier traversal counts edges repeated within a level once
+	 */
+	public long getEdges() {
+		return resolvedEdges + shortCircuitedEdges;
+	}
+}
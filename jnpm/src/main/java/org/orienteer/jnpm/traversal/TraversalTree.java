@@ -8,7 +8,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.orienteer.jnpm.IInstallationStrategy;
+import org.orienteer.jnpm.JNPMService;
 import org.orienteer.jnpm.JNPMUtils;
+import org.orienteer.jnpm.RxJNPMService;
 import org.orienteer.jnpm.dm.VersionInfo;
 
 import io.reactivex.Completable;
@@ -45,11 +47,12 @@ public class TraversalTree extends AbstractTraversalNode {
 	}
 	
 	public Completable install(final Path targetFolder, final IInstallationStrategy strategy) {
-		return Completable.concatArray(getVersion().downloadTarball(),
+		JNPMService service = context.getService();
+		return Completable.concatArray(getVersion().downloadTarball(service, service.getSettings().isUseCache()),
 								Completable.fromAction(()-> {
-									File tarball = getVersion().getLocalTarball();
+									File tarball = getVersion().getLocalTarball(service);
 									JNPMUtils.extractTarball(tarball, targetFolder, TraversalTree.this, strategy);
-								}));
+								}).subscribeOn(service.getSchedulers().getExtraction()));
 	}
 	
 	public TraversalTree commit() {
@@ -64,7 +67,7 @@ public class TraversalTree extends AbstractTraversalNode {
 			AbstractTraversalNode betterParent = findProperParent(version);
 			if(betterParent!=null) parent = betterParent;
 			level = parent.getLevel()+1;
-			parent.modifiableChildren.put(version, this);
+			parent.addChild(version, this);
 		}
 		return this;
 	}
@@ -73,6 +76,14 @@ public class TraversalTree extends AbstractTraversalNode {
 		this.duplicate = true;
 	}
 	
+	/**
+	 * @param version version of a dependency
+	 * @return already committed sub-tree for the dependency or null
+	 */
+	public TraversalTree getDependency(VersionInfo version) {
+		return modifiableDependencies.get(version);
+	}
+	
 	public TraversalTree subTreeFor(VersionInfo version) {
 		TraversalTree ret = modifiableDependencies.get(version);
 		if(ret==null) {
@@ -83,7 +94,10 @@ public class TraversalTree extends AbstractTraversalNode {
 	
 	@Override
 	public Observable<TraversalTree> getNextTraversalNodes() {
-		return getVersion().getDependencies(rule).map(v -> subTreeFor(v));
+		return Observable.fromIterable(getVersion().getNextDependencies(rule).entrySet())
+					.flatMap(e -> context.resolve(e.getKey(), e.getValue()).toObservable(),
+							 RxJNPMService.DEFAULT_RESOLUTION_WINDOW)
+					.map(v -> subTreeFor(v));
 	}
 	
 	@Override
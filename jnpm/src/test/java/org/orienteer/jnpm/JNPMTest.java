@@ -3,7 +3,11 @@ package org.orienteer.jnpm;
 import static org.mockito.Mockito.*;
 import static org.mockito.AdditionalAnswers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.orienteer.jnpm.traversal.ITraversalRule.DEPENDENCIES;
@@ -11,44 +15,107 @@ import static org.orienteer.jnpm.traversal.ITraversalRule.DEV_DEPENDENCIES;
 import static org.orienteer.jnpm.traversal.ITraversalRule.combine;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.UnknownServiceException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.net.ssl.SSLHandshakeException;
 
 import org.apache.commons.compress.utils.IOUtils;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.MockSettings;
+import org.orienteer.jnpm.cli.JNPM;
+import org.orienteer.jnpm.dm.LazyVersionsMap;
 import org.orienteer.jnpm.dm.PackageInfo;
 import org.orienteer.jnpm.dm.RegistryInfo;
+import org.orienteer.jnpm.dm.VersionIndex;
 import org.orienteer.jnpm.dm.VersionInfo;
+import org.orienteer.jnpm.dm.VersionRange;
+import org.orienteer.jnpm.dm.search.SearchResultItem;
+import org.orienteer.jnpm.dm.search.SearchResultPackage;
 import org.orienteer.jnpm.dm.search.SearchResults;
+import org.orienteer.jnpm.traversal.AbstractTraversalNode;
+import org.orienteer.jnpm.traversal.DependencyGraph;
+import org.orienteer.jnpm.traversal.FrontierTraversal;
 import org.orienteer.jnpm.traversal.ITraversalRule;
 import org.orienteer.jnpm.traversal.TraversalContext;
+import org.orienteer.jnpm.traversal.TraversalStats;
 import org.orienteer.jnpm.traversal.TraversalTree;
 import org.orienteer.jnpm.traversal.TraverseDirection;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.vdurmont.semver4j.Requirement;
 import com.vdurmont.semver4j.Semver;
 import com.vdurmont.semver4j.Semver.SemverType;
 
+import picocli.CommandLine;
+
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
+import io.reactivex.schedulers.Schedulers;
 import junit.framework.AssertionFailedError;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor.Level;
+import retrofit2.Converter;
+import retrofit2.Invocation;
 
 /**
  * Unit test for simple App.
@@ -382,6 +449,1623 @@ public class JNPMTest
     		.assertErrorMessage("Package 'notexisting' was not found");
     }
     
+    @Test
+    public void abbreviatedMetadata() throws Exception {
+    	Request request = new Request.Builder()
+    						.url(JNPMSettings.DEFAULT_REGISTRY_URL+"vue")
+    						.tag(Invocation.class, Invocation.of(RxJNPMService.class.getMethod("getPackageInfoForResolution", String.class),
+    															 Arrays.asList("vue")))
+    						.build();
+    	assertTrue(AbbreviatedMetadataInterceptor.isResolutionCall(request));
+    	request = request.newBuilder()
+    					.tag(Invocation.class, Invocation.of(RxJNPMService.class.getMethod("getPackageInfo", String.class),
+														 Arrays.asList("vue")))
+    					.build();
+    	assertFalse(AbbreviatedMetadataInterceptor.isResolutionCall(request));
+    	
+    	String json = "{\"name\":\"a\",\"modified\":\"2020-05-05T10:00:00.000Z\",\"dist-tags\":{\"latest\":\"1.0.0\"},"
+    				 +"\"versions\":{\"1.0.0\":{\"name\":\"a\",\"version\":\"1.0.0\",\"dependencies\":{\"b\":\"^2.0.0\"},"
+    				 +"\"dist\":{\"tarball\":\"https://registry.npmjs.org/a/-/a-1.0.0.tgz\"}}}}";
+    	Converter<ResponseBody, ?> converter = JNPMConverterFactory.create(new ObjectMapper())
+    												.responseBodyConverter(PackageInfo.class, new Annotation[0], null);
+    	PackageInfo packageInfo = (PackageInfo) converter.convert(
+    			ResponseBody.create(MediaType.get(AbbreviatedMetadataInterceptor.ABBREVIATED_MEDIA_TYPE), json));
+    	assertTrue(packageInfo.isAbbreviated());
+    	assertNotNull(packageInfo.getModified());
+    	VersionInfo version = packageInfo.getVersions().get("1.0.0");
+    	assertTrue(version.isAbbreviated());
+    	assertEquals("^2.0.0", version.getDependencies().get("b"));
+    	assertEquals("a-1.0.0.tgz", version.getDist().getTarballName());
+    	
+    	packageInfo = (PackageInfo) converter.convert(ResponseBody.create(MediaType.get("application/json"), json));
+    	assertFalse(packageInfo.isAbbreviated());
+    	assertFalse(packageInfo.getVersions().get("1.0.0").isAbbreviated());
+    }
+    
+    @Test
+    public void resolutionParsingProfile() throws Exception {
+    	String json = "{\"_id\":\"a\",\"_rev\":\"5-abc\",\"name\":\"a\",\"readme\":\"# Very long readme\","
+    				 +"\"time\":{\"created\":\"2020-05-05T10:00:00.000Z\",\"1.0.0\":\"2020-05-05T10:00:00.000Z\"},"
+    				 +"\"dist-tags\":{\"latest\":\"1.0.0\"},\"extra\":[{\"nested\":{\"deep\":[1,2,3]}}],"
+    				 +"\"versions\":{\"1.0.0\":{\"name\":\"a\",\"version\":\"1.0.0\",\"readme\":\"skip\","
+    				 +"\"scripts\":{\"test\":\"mocha\"},\"gitHooks\":{\"pre-commit\":\"lint\"},"
+    				 +"\"dependencies\":{\"b\":\"^2.0.0\"},\"devDependencies\":{\"c\":\"~1.2.0\"},"
+    				 +"\"bundleDependencies\":true,\"custom\":{\"x\":[{}]},"
+    				 +"\"dist\":{\"shasum\":\"123\",\"fileCount\":7,\"tarball\":\"https://registry.npmjs.org/a/-/a-1.0.0.tgz\"}}}}";
+    	Annotation[] annotations = RxJNPMService.class.getMethod("getPackageInfoForResolution", String.class).getAnnotations();
+    	Converter<ResponseBody, ?> converter = JNPMConverterFactory.create(new ObjectMapper(), ParsingProfile.RESOLUTION)
+    												.responseBodyConverter(PackageInfo.class, annotations, null);
+    	PackageInfo packageInfo = (PackageInfo) converter.convert(ResponseBody.create(MediaType.get("application/json"), json));
+    	assertEquals("a", packageInfo.getName());
+    	assertEquals("5-abc", packageInfo.getRev());
+    	assertEquals("1.0.0", packageInfo.getLatest());
+    	assertNull(packageInfo.getReadme());
+    	assertNull(packageInfo.getTime());
+    	assertTrue(packageInfo.getDetails().isEmpty());
+    	assertTrue(packageInfo.isAbbreviated());
+    	VersionInfo version = packageInfo.getVersions().get("1.0.0");
+    	assertEquals("1.0.0", version.getVersionAsString());
+    	assertEquals("^2.0.0", version.getDependencies().get("b"));
+    	assertEquals("~1.2.0", version.getDevDependencies().get("c"));
+    	assertEquals("123", version.getDist().getShasum());
+    	assertEquals(7, version.getDist().getFileCount());
+    	assertEquals("a-1.0.0.tgz", version.getDist().getTarballName());
+    	assertNull(version.getScripts());
+    	assertNull(version.getBundleDependencies());
+    	assertTrue(version.getDetails().isEmpty());
+    	assertTrue(version.isAbbreviated());
+    	
+    	//Full profile and not resolution calls should be bound completely
+    	converter = JNPMConverterFactory.create(new ObjectMapper(), ParsingProfile.RESOLUTION)
+				.responseBodyConverter(PackageInfo.class, new Annotation[0], null);
+    	packageInfo = (PackageInfo) converter.convert(ResponseBody.create(MediaType.get("application/json"), 
+    															json.replace("\"bundleDependencies\":true,", "")));
+    	assertEquals("# Very long readme", packageInfo.getReadme());
+    	assertNotNull(packageInfo.getVersions().get("1.0.0").getScripts());
+    	assertFalse(packageInfo.isAbbreviated());
+    }
+    
+    @Test
+    public void resolutionParsingProfileThroughService() throws Exception {
+    	String versionJson = "{\"name\":\"a\",\"version\":\"1.0.0\",\"readme\":\"skip\",\"scripts\":{\"test\":\"mocha\"},"
+    				 +"\"custom\":{\"x\":[{}]},\"dependencies\":{\"b\":\"^2.0.0\"},"
+    				 +"\"dist\":{\"shasum\":\"123\",\"tarball\":\"https://registry.npmjs.org/a/-/a-1.0.0.tgz\"}}";
+    	String json = "{\"name\":\"a\",\"readme\":\"# Very long readme\",\"extra\":[{\"nested\":true}],"
+    				 +"\"time\":{\"1.0.0\":\"2020-05-05T10:00:00.000Z\"},"
+    				 +"\"dist-tags\":{\"latest\":\"1.0.0\"},\"versions\":{\"1.0.0\":"+versionJson+"}}";
+    	HttpServer server = startServer(exchange -> {
+    		String path = exchange.getRequestURI().getPath();
+    		if(!path.startsWith("/a")) respond(exchange, 404, "{}");
+    		else respond(exchange, 200, path.endsWith("/1.0.0")?versionJson:json);
+    	});
+    	try {
+    		JNPMService jnpm = JNPMService.create(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-resolution"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(server))
+							.parsingProfile(ParsingProfile.RESOLUTION)
+							.httpCacheSize(0)
+							.build());
+    		//Exact versions are looked up without the packument
+    		VersionInfo exact = jnpm.getRxService().bestMatch("a", "1.0.0").blockingGet();
+    		assertEquals("^2.0.0", exact.getDependencies().get("b"));
+    		assertNull(exact.getScripts());
+    		assertTrue(exact.getDetails().isEmpty());
+    		
+    		VersionInfo ranged = jnpm.getRxService().bestMatch("a", "^1.0.0").blockingGet();
+    		assertEquals("^2.0.0", ranged.getDependencies().get("b"));
+    		assertNull(ranged.getScripts());
+    		assertTrue(ranged.getDetails().isEmpty());
+    		PackageInfo packageInfo = jnpm.getRxService().getPackageInfoForResolution("a").blockingGet();
+    		assertNull(packageInfo.getReadme());
+    		assertNull(packageInfo.getTime());
+    		assertTrue(packageInfo.getDetails().isEmpty());
+    		//Full information is still available separately
+    		assertEquals("# Very long readme", jnpm.getPackageInfo("a").getReadme());
+    	} finally {
+    		server.stop(0);
+    	}
+    }
+    
+    @Test
+    public void lazyVersionsMaterialization() throws Exception {
+    	String json = "{\"name\":\"a\",\"dist-tags\":{\"latest\":\"1.10.0\",\"next\":\"2.0.0-beta.1\"},\"versions\":{"
+    				 +"\"1.2.0\":{\"name\":\"a\",\"version\":\"1.2.0\"},"
+    				 +"\"1.10.0\":{\"name\":\"a\",\"version\":\"1.10.0\",\"dependencies\":{\"b\":\"^1.0.0\"}},"
+    				 +"\"1.9.1\":{\"name\":\"a\",\"version\":\"1.9.1\"},"
+    				 +"\"2.0.0-beta.1\":{\"name\":\"a\",\"version\":\"2.0.0-beta.1\"},"
+    				 +"\"0.1.0\":{\"name\":\"a\",\"version\":\"0.1.0\"}}}";
+    	PackageInfo packageInfo = new ObjectMapper().readValue(json, PackageInfo.class);
+    	assertTrue(packageInfo.getVersions() instanceof LazyVersionsMap);
+    	LazyVersionsMap versions = (LazyVersionsMap) packageInfo.getVersions();
+    	assertEquals(5, versions.size());
+    	assertEquals(0, versions.getMaterializedCount());
+    	assertEquals(Arrays.asList("0.1.0", "1.2.0", "1.9.1", "1.10.0", "2.0.0-beta.1"), packageInfo.getSortedVersions());
+    	assertEquals(0, versions.getMaterializedCount());
+    	
+    	VersionInfo best = packageInfo.bestMatch("^1.0.0");
+    	assertEquals("1.10.0", best.getVersionAsString());
+    	assertEquals("^1.0.0", best.getDependencies().get("b"));
+    	assertEquals(1, versions.getMaterializedCount());
+    	assertEquals("2.0.0-beta.1", packageInfo.bestMatch("next").getVersionAsString());
+    	assertNull(packageInfo.bestMatch("^3.0.0"));
+    	assertEquals(2, versions.getMaterializedCount());
+    	
+    	List<String> matched = packageInfo.retrieveVersions("~1.9.0 || 1.2.x").stream()
+    								.map(VersionInfo::getVersionAsString).collect(Collectors.toList());
+    	assertEquals(Arrays.asList("1.2.0", "1.9.1"), matched);
+    	assertEquals(4, versions.getMaterializedCount());
+    	
+    	//Lean resolution parser should keep versions lazy as well
+    	Annotation[] annotations = RxJNPMService.class.getMethod("getPackageInfoForResolution", String.class).getAnnotations();
+    	Converter<ResponseBody, ?> converter = JNPMConverterFactory.create(new ObjectMapper(), ParsingProfile.RESOLUTION)
+    												.responseBodyConverter(PackageInfo.class, annotations, null);
+    	packageInfo = (PackageInfo) converter.convert(ResponseBody.create(MediaType.get("application/json"), json));
+    	versions = (LazyVersionsMap) packageInfo.getVersions();
+    	assertEquals(0, versions.getMaterializedCount());
+    	best = packageInfo.bestMatch("1.x");
+    	assertEquals("1.10.0", best.getVersionAsString());
+    	assertTrue(best.isAbbreviated());
+    	assertEquals(1, versions.getMaterializedCount());
+    }
+    
+    @Test
+    public void versionIndexResolution() throws Exception {
+    	Random random = new Random(42);
+    	Map<String, VersionInfo> versions = new HashMap<>();
+    	while(versions.size()<1500) {
+    		String version = random.nextInt(5)+"."+random.nextInt(20)+"."+random.nextInt(30)
+    							+(random.nextInt(10)==0?"-beta."+random.nextInt(3):"");
+    		VersionInfo versionInfo = new VersionInfo();
+    		versionInfo.setName("a");
+    		versionInfo.setVersionAsString(version);
+    		versions.put(version, versionInfo);
+    	}
+    	PackageInfo packageInfo = new PackageInfo();
+    	packageInfo.setVersions(versions);
+    	VersionIndex index = packageInfo.getVersionIndex();
+    	assertEquals(1500, index.size());
+    	assertSame(index, packageInfo.getVersionIndex());
+    	for(int i=1; i<index.size(); i++) {
+    		assertTrue(index.getSemver(i-1).isLowerThan(index.getSemver(i)));
+    		assertTrue(index.getMajor(i-1)<=index.getMajor(i));
+    	}
+    	
+    	String[] ranges = {"^1.0.0", "~2.6.11", ">=3 <4", "1.x", "*", "<0.5.0", "^5.0.0", "2.3.4", 
+    						">1.2.3-beta.1 <1.2.4", "^0.0.1", "1.2.7 || >=2.5.0 <2.6.0"};
+    	for (String range : ranges) {
+    		Requirement requirement = Requirement.buildNPM(range);
+    		List<VersionInfo> expected = versions.values().stream()
+    										.filter(v -> v.satisfies(requirement))
+    										.sorted().collect(Collectors.toList());
+    		assertEquals(range, expected, packageInfo.retrieveVersions(range));
+    		assertSame(range, expected.isEmpty()?null:expected.get(expected.size()-1), packageInfo.bestMatch(range));
+    	}
+    	
+    	//Changing of versions should rebuild the index
+    	packageInfo.setVersions(new HashMap<>());
+    	assertEquals(0, packageInfo.getVersionIndex().size());
+    	assertNull(packageInfo.bestMatch("*"));
+    }
+    
+    @Test
+    public void compiledVersionRanges() throws Exception {
+    	Random random = new Random(7);
+    	List<String> versions = new ArrayList<>();
+    	for(int i=0; i<2000; i++) {
+    		versions.add(random.nextInt(4)+"."+random.nextInt(6)+"."+random.nextInt(6)
+    						+(random.nextInt(5)==0?"-"+(random.nextBoolean()?"alpha":"beta")+"."+random.nextInt(3):""));
+    	}
+    	VersionIndex index = VersionIndex.build(versions);
+    	String[] compiled = {"1.2.3", "=1.2.3", "1.2.3-beta.1", ">=1.2.3", ">1.2.3", "<1.2.3", "<=1.2.3", ">= 1.2.3 < 2.0.0",
+    						 "^1.2.3", "^0.2.3", "^0.0.3", "^1.2.3-beta.1", "~1.2.3", "~1.2.3-alpha.2", "~1.2", "~1", "^1.2", "^1",
+    						 "^0", "^0.0", "^0.1.x", "1.x", "1.2.x", "1.X", "1.2.*", "1", "1.2", "*", "1.2.3 - 2.3.4",
+    						 "1.2.3-beta.0 - 2.0.0", ">=1.2.3 <2.0.0 || ^3", "1.2.3 || 2.x", "^1.2.3 ^1.4.0", "<0.0.0"};
+    	String[] notCompiled = {"<1.2", ">1.2.3<2.0.0", "=1", "v1.2.3", "~>1.2.3", "", "1.2 - 2.3"};
+    	for (String range : compiled) assertTrue(range, VersionRange.compile(range).isCompiled());
+    	for (String range : notCompiled) assertFalse(range, VersionRange.compile(range).isCompiled());
+    	List<String> ranges = new ArrayList<>(Arrays.asList(compiled));
+    	ranges.addAll(Arrays.asList(notCompiled));
+    	for (String range : ranges) {
+    		VersionRange versionRange = VersionRange.compile(range);
+    		Requirement requirement = Requirement.buildNPM(range);
+    		List<Integer> expected = new ArrayList<>();
+    		for(int i=0; i<index.size(); i++) {
+    			if(index.getSemver(i).satisfies(requirement)) expected.add(i);
+    		}
+    		assertEquals(range, expected, versionRange.allSatisfying(index));
+    		assertEquals(range, expected.isEmpty()?-1:expected.get(expected.size()-1), versionRange.maxSatisfying(index));
+    	}
+    	
+    	//Tags and invalid constraints are not ranges and it should be cached as well
+    	assertNull(VersionRange.compile("latest"));
+    	assertNull(VersionRange.compile("next"));
+    	assertNull(JNPMUtils.toVersionPredicate("latest"));
+    	assertSame(VersionRange.compile("^1.2.3"), VersionRange.compile("^1.2.3"));
+    	assertSame(VersionRange.compile("^1.2.3").getRequirement(), JNPMUtils.toVersionPredicate("^1.2.3"));
+    	VersionRange.clearCache();
+    	assertEquals(0, VersionRange.getCacheSize());
+    	assertNull(VersionRange.compile("next"));
+    	assertEquals(1, VersionRange.getCacheSize());
+    }
+    
+    @Test
+    public void resolutionMemo() throws Exception {
+    	ObjectMapper mapper = new ObjectMapper();
+    	String json = "{\"_rev\":\"1-a\",\"name\":\"a\",\"dist-tags\":{\"latest\":\"1.1.0\"},\"versions\":{"
+    					+"\"1.0.0\":{\"name\":\"a\",\"version\":\"1.0.0\"},"
+    					+"\"1.1.0\":{\"name\":\"a\",\"version\":\"1.1.0\"}}}";
+    	RxJNPMService delegate = mock(RxJNPMService.class);
+    	when(delegate.getPackageInfo("a")).thenReturn(Maybe.fromCallable(() -> mapper.readValue(json, PackageInfo.class)));
+    	CachingRxJNPMService service = new CachingRxJNPMService(delegate, JNPMSettings.builder().build());
+    	ResolutionMemo memo = service.getResolutionMemo();
+    	
+    	VersionInfo resolved = service.bestMatch("a", "^1.0.0").blockingGet();
+    	assertEquals("1.1.0", resolved.getVersionAsString());
+    	assertSame(resolved, service.bestMatch("a", "^1.0.0").blockingGet());
+    	assertSame(resolved, service.bestMatch("a@latest").blockingGet());
+    	assertNull(service.bestMatch("a", "^2.0.0").blockingGet());
+    	assertNull(service.bestMatch("a", "^2.0.0").blockingGet());
+    	assertEquals(2, memo.getStats().getHits());
+    	assertEquals(3, memo.getStats().getMisses());
+    	
+    	//The same package information loaded again should keep resolutions
+    	service.getPackageInfoCache().invalidateAll();
+    	assertSame(resolved, service.bestMatch("a", "^1.0.0").blockingGet());
+    	assertEquals(0, memo.getInvalidations());
+    	
+    	//New revision of the package should drop resolutions
+    	when(delegate.getPackageInfo("a")).thenReturn(Maybe.fromCallable(() -> mapper.readValue(json.replace("1-a", "2-b")
+    																	.replace("\"1.1.0\"}", "\"1.1.0\"},\"1.2.0\":{\"name\":\"a\",\"version\":\"1.2.0\"}")
+    																	.replace("\"latest\":\"1.1.0\"", "\"latest\":\"1.2.0\""),
+    																	PackageInfo.class)));
+    	service.getPackageInfoCache().invalidateAll();
+    	assertEquals("1.2.0", service.bestMatch("a", "^1.0.0").blockingGet().getVersionAsString());
+    	assertEquals("1.2.0", service.bestMatch("a", "latest").blockingGet().getVersionAsString());
+    	assertEquals(1, memo.getInvalidations());
+    	assertEquals(1, memo.size());
+    	verify(delegate, times(3)).getPackageInfo("a");
+    	
+    	//Memo doesn't keep package information alive after caches have dropped it
+    	ResolutionMemo standalone = new ResolutionMemo(10);
+    	PackageInfo packageInfo = mapper.readValue(json, PackageInfo.class);
+    	assertEquals("1.1.0", standalone.bestMatch("a", packageInfo, "^1.0.0").getVersionAsString());
+    	ReferenceQueue<PackageInfo> collected = new ReferenceQueue<>();
+    	WeakReference<PackageInfo> reference = new WeakReference<>(packageInfo, collected);
+    	packageInfo = null;
+    	//Collection is awaited through the queue instead of fixed pauses
+    	for (int i = 0; i < 50 && reference.get()!=null; i++) {
+    		System.gc();
+    		collected.remove(100);
+    	}
+    	assertNull(reference.get());
+    	assertEquals(1, standalone.size());
+    }
+    
+    @Test
+    public void traversalRootsErrors() throws Exception {
+    	RxJNPMService delegate = mock(RxJNPMService.class);
+    	when(delegate.getDistTags("down")).thenReturn(Maybe.error(new IOException("Registry is down")));
+    	when(delegate.getDistTags("missing")).thenReturn(Maybe.empty());
+    	//Package information is used if dist-tags are not available
+    	when(delegate.getPackageInfo("down")).thenReturn(Maybe.error(new IOException("Registry is down")));
+    	when(delegate.getPackageInfo("missing")).thenReturn(Maybe.empty());
+    	CachingRxJNPMService service = new CachingRxJNPMService(delegate, JNPMSettings.builder().build());
+    	//Errors of the registry are reported as they are
+    	service.traverse(TraverseDirection.WIDER, DEPENDENCIES, "down").test()
+    		.assertError(IOException.class)
+    		.assertErrorMessage("Registry is down");
+    	service.traverseFlowable(TraverseDirection.WIDER, DEPENDENCIES, 16, "down").test()
+			.assertError(IOException.class);
+    	service.traverse(TraverseDirection.WIDER, DEPENDENCIES, "missing").test()
+    		.assertError(NoSuchElementException.class)
+    		.assertErrorMessage("Package 'missing' was not found");
+    }
+    
+    @Test
+    public void bulkResolution() throws Exception {
+    	ObjectMapper mapper = new ObjectMapper();
+    	AtomicInteger inFlight = new AtomicInteger();
+    	AtomicInteger maxInFlight = new AtomicInteger();
+    	RxJNPMService delegate = mock(RxJNPMService.class);
+    	when(delegate.getPackageInfo(anyString())).thenAnswer(invocation -> {
+    		String name = invocation.getArgument(0);
+    		if("missing".equals(name)) return Maybe.empty();
+    		String json = "{\"name\":\""+name+"\",\"dist-tags\":{\"latest\":\"1.1.0\"},\"versions\":{"
+    					+"\"1.0.0\":{\"name\":\""+name+"\",\"version\":\"1.0.0\"},"
+    					+"\"1.1.0\":{\"name\":\""+name+"\",\"version\":\"1.1.0\"}}}";
+    		return Maybe.fromCallable(() -> {
+    						maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    						Thread.sleep(20);
+    						inFlight.decrementAndGet();
+    						return mapper.readValue(json, PackageInfo.class);
+    					}).subscribeOn(Schedulers.io());
+    	});
+    	CachingRxJNPMService service = new CachingRxJNPMService(delegate, JNPMSettings.builder().build());
+
+    	Map<String, String> dependencies = new HashMap<>();
+    	for(int i=0; i<40; i++) dependencies.put("p"+i, "^1.0.0");
+    	List<Resolution> resolutions = service.resolveAll(dependencies).toList().blockingGet();
+    	assertEquals(40, resolutions.size());
+    	for (Resolution resolution : resolutions) {
+			assertTrue(resolution.isResolved());
+			assertEquals("1.1.0", resolution.getVersion().getVersionAsString());
+			assertEquals(resolution.getPackageName(), resolution.getVersion().getName());
+		}
+    	verify(delegate, times(40)).getPackageInfo(anyString());
+    	assertTrue(maxInFlight.get()>1);
+    	assertTrue(maxInFlight.get()<=RxJNPMService.DEFAULT_RESOLUTION_WINDOW);
+
+    	//All constraints of a package are answered by single package information
+    	resolutions = service.resolveAll("x@^1.0.0", "x@~1.0.0", "x@latest", "x@^2.0.0", "missing@^1.0.0").toList().blockingGet();
+    	assertEquals(5, resolutions.size());
+    	Map<String, Resolution> byExpression = resolutions.stream()
+    									.collect(Collectors.toMap(Resolution::getExpression, r -> r));
+    	assertEquals("1.1.0", byExpression.get("x@^1.0.0").getVersion().getVersionAsString());
+    	assertEquals("1.0.0", byExpression.get("x@~1.0.0").getVersion().getVersionAsString());
+    	assertEquals("1.1.0", byExpression.get("x@latest").getVersion().getVersionAsString());
+    	assertFalse(byExpression.get("x@^2.0.0").isResolved());
+    	assertFalse(byExpression.get("missing@^1.0.0").isResolved());
+    	verify(delegate, times(1)).getPackageInfo("x");
+    }
+
+    @Test
+    public void paginatedSearch() throws Exception {
+    	List<Integer> requestedPages = new ArrayList<>();
+    	AtomicReference<Scheduler> pagesScheduler = new AtomicReference<>(Schedulers.io());
+    	RxJNPMService delegate = mock(RxJNPMService.class);
+    	doAnswer(invocation -> {
+    		int size = invocation.getArgument(1);
+    		int from = invocation.getArgument(2);
+    		return Single.fromCallable(() -> {
+    			synchronized (requestedPages) {
+    				requestedPages.add(from/size);
+    			}
+    			SearchResults results = new SearchResults();
+    			results.setTotal(1010);
+    			List<SearchResultItem> items = new ArrayList<>();
+    			for(int i=from; i<Math.min(from+size, 1010); i++) {
+    				SearchResultItem item = new SearchResultItem();
+    				SearchResultPackage pkg = new SearchResultPackage();
+    				pkg.setName("p"+i);
+    				item.setSearchPackage(pkg);
+    				items.add(item);
+    			}
+    			results.setObjects(items);
+    			return results;
+    		}).subscribeOn(pagesScheduler.get());
+    	}).when(delegate).search(anyString(), any(), any(), any(), any(), any());
+    	RxJNPMService service = new CachingRxJNPMService(delegate, JNPMSettings.builder().searchCacheSize(0).build());
+
+    	List<SearchResultPackage> all = service.searchAll("p", 50).toList().blockingGet();
+    	assertEquals(1010, all.size());
+    	assertEquals("p0", all.get(0).getName());
+    	assertEquals("p1009", all.get(1009).getName());
+    	assertEquals(21, requestedPages.size());
+
+    	//Only pages required by subscriber and one page ahead should be requested
+    	requestedPages.clear();
+    	List<SearchResultPackage> first = service.searchAll("p", 50).take(120).toList().blockingGet();
+    	assertEquals(120, first.size());
+    	assertEquals("p119", first.get(119).getName());
+    	assertTrue(requestedPages.size()>=3 && requestedPages.size()<=4);
+
+    	//Pages are retrieved on the calling thread, so everything caused by the request is done when it returns
+    	requestedPages.clear();
+    	pagesScheduler.set(Schedulers.trampoline());
+    	TestSubscriber<SearchResultPackage> subscriber = service.searchAll("p", 50).test(10);
+    	subscriber.assertValueCount(10);
+    	assertTrue(requestedPages.size()<=2);
+    	subscriber.cancel();
+    	pagesScheduler.set(Schedulers.io());
+    	
+    	//Pages of wrong size would be requested forever
+    	try {
+    		service.searchAll("p", 0);
+    		throw new AssertionFailedError("Page size should be validated");
+    	} catch (IllegalArgumentException e) {
+    		//Expected
+    	}
+    	//Registry doesn't return more than 250 packages per page
+    	assertEquals(1010, service.searchAll("p", 1000).toList().blockingGet().size());
+    	verify(delegate, never()).search(eq("p"), eq(1000), any(), any(), any(), any());
+    	verify(delegate, times(5)).search(eq("p"), eq(RxJNPMService.MAX_SEARCH_PAGE_SIZE), any(), any(), any(), any());
+    }
+
+    @Test
+    public void searchCacheAndLocalIndex() throws Exception {
+    	ObjectMapper mapper = new ObjectMapper();
+    	RxJNPMService delegate = mock(RxJNPMService.class);
+    	when(delegate.search(anyString(), any(), any(), any(), any(), any()))
+    		.thenAnswer(invocation -> Single.fromCallable(SearchResults::new));
+    	Map<String, String> packuments = new HashMap<>();
+    	packuments.put("vue", "{\"name\":\"vue\",\"description\":\"Reactive, component-oriented view layer\","
+    							+"\"keywords\":[\"vue\"],\"versions\":{}}");
+    	packuments.put("vue-router", "{\"name\":\"vue-router\",\"description\":\"Official router for Vue.js\","
+    							+"\"versions\":{}}");
+    	packuments.put("@angular/core", "{\"name\":\"@angular/core\",\"description\":\"Angular - the core framework\","
+    							+"\"keywords\":[\"angular\",\"framework\"],\"versions\":{}}");
+    	when(delegate.getPackageInfo(anyString())).thenAnswer(invocation ->
+    		Maybe.fromCallable(() -> mapper.readValue(packuments.get(invocation.getArgument(0)), PackageInfo.class)));
+    	CachingRxJNPMService service = new CachingRxJNPMService(delegate,
+    										JNPMSettings.builder().useLocalSearchIndex(true).build());
+
+    	SearchResults results = service.search("vue", 20, 0).blockingGet();
+    	assertSame(results, service.search("vue", 20, 0).blockingGet());
+    	service.search("vue", 20, 0, 1.0f, null, null).blockingGet();
+    	verify(delegate, times(1)).search("vue", 20, 0, null, null, null);
+    	verify(delegate, times(1)).search("vue", 20, 0, 1.0f, null, null);
+    	assertEquals(1, service.getSearchCache().getStats().getHits());
+
+    	PackageSearchIndex index = service.getSearchIndex();
+    	for (String name : packuments.keySet()) service.getPackageInfo(name).blockingGet();
+    	assertEquals(3, index.size());
+    	List<String> found = index.search("vu", 10).stream().map(SearchResultPackage::getName).collect(Collectors.toList());
+    	assertEquals(Arrays.asList("vue", "vue-router"), found);
+    	assertEquals("@angular/core", index.search("angular fram", 10).get(0).getName());
+    	assertEquals("vue-router", index.search("Vue.js rout", 10).get(0).getName());
+    	assertEquals(1, index.search("vue", 1).size());
+    	assertTrue(index.search("svelte", 10).isEmpty());
+
+    	//Reindexing should drop stale tokens
+    	packuments.put("vue-router", "{\"name\":\"vue-router\",\"description\":\"Routing\",\"versions\":{}}");
+    	service.getPackageInfoCache().invalidateAll();
+    	service.getPackageInfo("vue-router").blockingGet();
+    	assertTrue(index.search("official", 10).isEmpty());
+    	assertEquals("vue-router", index.search("routing", 10).get(0).getName());
+    	assertNull(new CachingRxJNPMService(delegate, JNPMSettings.builder().build()).getSearchIndex());
+    	
+    	//Abbreviated metadata doesn't override full one and the least recently indexed packages are dropped
+    	PackageSearchIndex bounded = new PackageSearchIndex(2);
+    	bounded.add(mapper.readValue(packuments.get("vue"), PackageInfo.class));
+    	PackageInfo abbreviated = mapper.readValue("{\"name\":\"vue\",\"versions\":{}}", PackageInfo.class);
+    	abbreviated.markAbbreviated();
+    	bounded.add(abbreviated);
+    	assertEquals("vue", bounded.search("reactive", 10).get(0).getName());
+    	bounded.add(mapper.readValue(packuments.get("vue-router"), PackageInfo.class));
+    	bounded.add(mapper.readValue(packuments.get("@angular/core"), PackageInfo.class));
+    	assertEquals(2, bounded.size());
+    	assertTrue(bounded.search("reactive", 10).isEmpty());
+    	assertEquals("@angular/core", bounded.search("angular", 10).get(0).getName());
+    }
+
+    @Test
+    public void tarballCopiedOnDownloadThreads() throws Exception {
+    	byte[] tarball = new byte[64*1024];
+    	RANDOM.nextBytes(tarball);
+    	HttpServer server = startServer(exchange -> respond(exchange, 200, tarball));
+    	List<String> threads = new ArrayList<>();
+    	try {
+    		String url = urlOf(server);
+    		JNPMService jnpm = JNPMService.create(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-download"+RANDOM.nextInt(999999)))
+							.registryUrl(url)
+							.executionModel(ExecutionModel.BOUNDED)
+							.httpCacheSize(0)
+							.logger(new ILogger() {
+								@Override
+								public void log(String message, Throwable exc) {
+								}
+								
+								@Override
+								public void log(String message) {
+									//Logged right before copying of the body
+									if(message.startsWith("Downloading file")) threads.add(Thread.currentThread().getName());
+								}
+							})
+							.build());
+    		VersionInfo version = new ObjectMapper().readValue("{\"name\":\"a\",\"version\":\"1.0.0\","
+    											+"\"dist\":{\"tarball\":\""+url+"a/-/a-1.0.0.tgz\"}}", VersionInfo.class);
+    		assertTrue(version.downloadTarball(jnpm, false).blockingAwait(10, TimeUnit.SECONDS));
+    		assertEquals(1, threads.size());
+    		assertTrue(threads.get(0), threads.get(0).startsWith("jnpm-download-"));
+    		assertTrue(Arrays.equals(tarball, Files.readAllBytes(version.getLocalTarball(jnpm).toPath())));
+    		jnpm.close();
+    	} finally {
+    		server.stop(0);
+    	}
+    }
+
+    @Test
+    public void closingOfStandaloneService() throws Exception {
+    	ExecutorService custom = Executors.newSingleThreadExecutor();
+    	try {
+    		JNPMService jnpm = JNPMService.create(JNPMSettings.builder()
+    							.homeDirectory(Paths.get("target", ".jnpm-close"+RANDOM.nextInt(999999)))
+    							.executionModel(ExecutionModel.BOUNDED)
+    							.downloadScheduler(Schedulers.from(custom))
+    							.scopedRegistries(Arrays.asList(ScopedRegistry.of("@scope", "http://localhost:1/")))
+    							.build());
+    		assertTrue(Completable.fromAction(() -> {}).subscribeOn(jnpm.getSchedulers().getMetadata())
+    								.blockingAwait(5, TimeUnit.SECONDS));
+    		assertFalse(jnpm.getSchedulers().isShutdown());
+    		jnpm.close();
+    		jnpm.close();
+    		assertTrue(jnpm.getSchedulers().isShutdown());
+    		assertTrue(jnpm.getHttpClient().dispatcher().executorService().isShutdown());
+    		assertTrue(jnpm.getHttpClient("@scope/a").dispatcher().executorService().isShutdown());
+    		assertNotSame(jnpm.getHttpClient(), jnpm.getHttpClient("@scope/a"));
+    		//Explicitly provided schedulers are kept for others
+    		assertFalse(custom.isShutdown());
+    	} finally {
+    		custom.shutdown();
+    	}
+    }
+
+    @Test
+    public void pluggableSchedulers() throws Exception {
+    	JNPMSchedulers io = new JNPMSchedulers(JNPMSettings.builder().build());
+    	assertEquals(ExecutionModel.IO, io.getExecutionModel());
+    	assertSame(Schedulers.io(), io.getMetadata());
+
+    	Scheduler custom = Schedulers.single();
+    	JNPMSchedulers bounded = new JNPMSchedulers(JNPMSettings.builder()
+    												.executionModel(ExecutionModel.BOUNDED)
+    												.metadataThreads(2)
+    												.downloadScheduler(custom)
+    												.build());
+    	try {
+    		assertSame(custom, bounded.getDownload());
+    		AtomicInteger maxInFlight = new AtomicInteger();
+    		AtomicInteger inFlight = new AtomicInteger();
+    		List<String> threads = Observable.range(0, 10)
+    				.flatMap(i -> Observable.fromCallable(() -> {
+    								maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    								Thread.sleep(20);
+    								inFlight.decrementAndGet();
+    								return Thread.currentThread().getName();
+    							}).subscribeOn(bounded.getMetadata()))
+    				.toList().blockingGet();
+    		assertTrue(threads.stream().allMatch(t -> t.startsWith("jnpm-metadata-")));
+    		assertEquals(2, maxInFlight.get());
+    		assertTrue(Completable.fromAction(() -> {}).subscribeOn(bounded.getExtraction())
+    								.blockingAwait(5, TimeUnit.SECONDS));
+    	} finally {
+    		bounded.shutdown();
+    	}
+
+    	JNPMSchedulers virtual = new JNPMSchedulers(JNPMSettings.builder()
+    												.executionModel(ExecutionModel.VIRTUAL_THREADS)
+    												.build());
+    	try {
+    		assertEquals(JNPMSchedulers.isVirtualThreadsSupported()?ExecutionModel.VIRTUAL_THREADS:ExecutionModel.BOUNDED,
+    					 virtual.getExecutionModel());
+    		assertNotNull(Single.fromCallable(() -> Thread.currentThread().getName())
+    							.subscribeOn(virtual.getDownload()).blockingGet());
+    	} finally {
+    		virtual.shutdown();
+    	}
+    }
+
+    @Test
+    public void exactVersionResolution() throws Exception {
+    	ObjectMapper mapper = new ObjectMapper();
+    	String json = "{\"name\":\"a\",\"dist-tags\":{\"latest\":\"1.1.0\"},\"versions\":{"
+    					+"\"1.0.0\":{\"name\":\"a\",\"version\":\"1.0.0\"},"
+    					+"\"1.1.0\":{\"name\":\"a\",\"version\":\"1.1.0\"}}}";
+    	RxJNPMService delegate = mock(RxJNPMService.class);
+    	when(delegate.getPackageInfo("a")).thenReturn(Maybe.fromCallable(() -> mapper.readValue(json, PackageInfo.class)));
+    	when(delegate.getVersionInfo("a", "1.0.0")).thenReturn(Maybe.fromCallable(() -> 
+    							mapper.readValue("{\"name\":\"a\",\"version\":\"1.0.0\"}", VersionInfo.class)));
+    	when(delegate.getVersionInfo("a", "3.0.0")).thenReturn(Maybe.empty());
+    	CachingRxJNPMService service = new CachingRxJNPMService(delegate, JNPMSettings.builder().build());
+    	
+    	VersionInfo version = service.bestMatch("a@1.0.0").blockingGet();
+    	assertEquals("1.0.0", version.getVersionAsString());
+    	assertSame(version, service.bestMatch("a", "=1.0.0").blockingGet());
+    	assertEquals(1, service.retrieveVersions("a", "1.0.0").count().blockingGet().intValue());
+    	assertNull(service.bestMatch("a", "3.0.0").blockingGet());
+    	verify(delegate, times(1)).getVersionInfo("a", "1.0.0");
+    	verify(delegate, never()).getPackageInfo("a");
+    	
+    	//Warm package information should be used instead
+    	assertEquals("1.1.0", service.bestMatch("a", "^1.0.0").blockingGet().getVersionAsString());
+    	assertEquals("1.1.0", service.bestMatch("a", "1.1.0").blockingGet().getVersionAsString());
+    	verify(delegate, never()).getVersionInfo("a", "1.1.0");
+    	verify(delegate, times(1)).getPackageInfo("a");
+    }
+    
+    @Test
+    public void distTagsResolution() throws Exception {
+    	ObjectMapper mapper = new ObjectMapper();
+    	RxJNPMService delegate = mock(RxJNPMService.class);
+    	when(delegate.getDistTags("a")).thenReturn(Maybe.fromCallable(() -> mapper.readValue("{\"latest\":\"1.1.0\"}",
+    																	new TypeReference<Map<String, String>>() {})));
+    	when(delegate.getVersionInfo("a", "1.1.0")).thenReturn(Maybe.fromCallable(() -> 
+    							mapper.readValue("{\"name\":\"a\",\"version\":\"1.1.0\"}", VersionInfo.class)));
+    	CachingRxJNPMService service = new CachingRxJNPMService(delegate, JNPMSettings.builder().build());
+    	
+    	assertEquals("1.1.0", service.bestMatch("a").blockingGet().getVersionAsString());
+    	assertEquals("1.1.0", service.bestMatch("a", "latest").blockingGet().getVersionAsString());
+    	assertEquals(1, service.retrieveVersions("a@latest").count().blockingGet().intValue());
+    	verify(delegate, times(1)).getDistTags("a");
+    	verify(delegate, times(1)).getVersionInfo("a", "1.1.0");
+    	verify(delegate, never()).getPackageInfo("a");
+    	
+    	//Tags should be refreshed separately from versions
+    	service.getDistTagsCache().invalidateAll();
+    	assertEquals("1.1.0", service.bestMatch("a", "latest").blockingGet().getVersionAsString());
+    	verify(delegate, times(2)).getDistTags("a");
+    	verify(delegate, times(1)).getVersionInfo("a", "1.1.0");
+    	
+    	//Unknown tag is looked up in package information
+    	when(delegate.getPackageInfo("a")).thenReturn(Maybe.fromCallable(() -> mapper.readValue(
+    			"{\"name\":\"a\",\"dist-tags\":{\"latest\":\"1.1.0\"},\"versions\":{"
+    			+"\"1.1.0\":{\"name\":\"a\",\"version\":\"1.1.0\"}}}", PackageInfo.class)));
+    	assertNull(service.bestMatch("a", "next").blockingGet());
+    	verify(delegate, times(1)).getPackageInfo("a");
+    }
+    
+    @Test
+    public void distTagsNotSupportedByRegistry() throws Exception {
+    	List<String> paths = new ArrayList<>();
+    	HttpServer server = startServer(exchange -> {
+    		String path = exchange.getRequestURI().getPath();
+    		synchronized (paths) {
+    			paths.add(path);
+    		}
+    		if(path.matches("/[a-z]+")) {
+    			String name = path.substring(1);
+    			respond(exchange, 200, "{\"name\":\""+name+"\",\"dist-tags\":{\"latest\":\"1.1.0\"},\"versions\":{"
+    								+"\"1.0.0\":{\"name\":\""+name+"\",\"version\":\"1.0.0\"},"
+    								+"\"1.1.0\":{\"name\":\""+name+"\",\"version\":\"1.1.0\"}}}");
+    		} else {
+    			//Proxy doesn't serve /-/package/{name}/dist-tags
+    			respond(exchange, 404, "{}");
+    		}
+    	});
+    	try {
+    		JNPMService jnpm = JNPMService.create(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-dist-tags"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(server))
+							.httpCacheSize(0)
+							.build());
+    		assertEquals("1.1.0", jnpm.bestMatch("a").getVersionAsString());
+    		assertEquals("1.1.0", jnpm.getRxService().bestMatch("a", "latest").blockingGet().getVersionAsString());
+    		assertEquals(Arrays.asList("/-/package/a/dist-tags", "/a"), paths);
+    		assertEquals("1.1.0", jnpm.getBlockingClient().bestMatch("b").getVersionAsString());
+    		assertEquals(Arrays.asList("/-/package/a/dist-tags", "/a", "/-/package/b/dist-tags", "/b"), paths);
+    		jnpm.close();
+    	} finally {
+    		server.stop(0);
+    	}
+    }
+    
+    @Test
+    public void singleFlightCache() throws Exception {
+    	SingleFlightCache<String, String> cache = new SingleFlightCache<>(2, 1, TimeUnit.MINUTES);
+    	AtomicInteger calls = new AtomicInteger();
+    	Supplier<Maybe<String>> loader = () -> Maybe.fromCallable(() -> "value"+calls.incrementAndGet())
+    												.delay(100, TimeUnit.MILLISECONDS);
+    	List<String> results = Observable.range(0, 10)
+    								.flatMapMaybe(i -> cache.get("a", loader).subscribeOn(Schedulers.io()))
+    								.toList().blockingGet();
+    	assertEquals(10, results.size());
+    	assertTrue(results.stream().allMatch("value1"::equals));
+    	assertEquals(1, calls.get());
+    	assertEquals(1, cache.getStats().getMisses());
+    	assertEquals(9, cache.getStats().getHits());
+    	
+    	//Errors should not be cached
+    	assertNull(cache.get("b", () -> Maybe.error(new IOException("Failed"))).onErrorComplete().blockingGet());
+    	assertFalse(cache.contains("b"));
+    	
+    	//Size should be bounded
+    	cache.get("c", loader).blockingGet();
+    	cache.get("d", loader).blockingGet();
+    	assertEquals(2, cache.size());
+    	assertFalse(cache.contains("a"));
+    	assertEquals(1, cache.getStats().getEvictions());
+    }
+    
+    @Test
+    public void httpCacheRevalidation() throws Exception {
+    	String json = "{\"name\":\"a\",\"dist-tags\":{\"latest\":\"1.0.0\"},\"versions\":{}}";
+    	AtomicInteger notModified = new AtomicInteger();
+    	HttpServer server = startServer(exchange -> {
+    		exchange.getResponseHeaders().add("ETag", "\"v1\"");
+    		exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+    		if("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+    			notModified.incrementAndGet();
+    			respond(exchange, 304, (byte[])null);
+    		} else {
+    			respond(exchange, 200, json);
+    		}
+    	});
+    	JNPMService original = JNPMService.instance(null);
+    	try {
+    		JNPMService jnpm = JNPMService.configure(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-http-cache"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(server))
+							.packageInfoCacheSize(0)
+							.build());
+    		assertEquals("a", jnpm.getPackageInfo("a").getName());
+    		assertEquals("a", jnpm.getPackageInfo("a").getName());
+    		assertEquals(1, notModified.get());
+    		assertEquals(2, jnpm.getHttpCache().requestCount());
+    		assertEquals(1, jnpm.getHttpCache().hitCount());
+    		
+    		//Forced run goes to the network even if the persistent cache has the response
+    		JNPMService forced = JNPMService.create(jnpm.getSettings().toBuilder().useCache(false).build());
+    		assertEquals("a", forced.getPackageInfo("a").getName());
+    		assertEquals(1, notModified.get());
+    		assertEquals(1, forced.getHttpCache().hitCount());
+    	} finally {
+    		JNPMService.instance(original);
+    		server.stop(0);
+    	}
+    }
+    
+    @Test
+    public void httpCacheOfAbbreviatedMetadata() throws Exception {
+    	List<String> requests = new ArrayList<>();
+    	HttpServer server = startServer(exchange -> {
+    		String accept = exchange.getRequestHeaders().getFirst("Accept");
+    		boolean abbreviated = accept!=null && accept.startsWith(AbbreviatedMetadataInterceptor.ABBREVIATED_MEDIA_TYPE);
+    		synchronized (requests) {
+    			requests.add(exchange.getRequestURI().toString()+(abbreviated?" abbreviated":""));
+    		}
+    		//Cacheable response without "Vary: Accept"
+    		exchange.getResponseHeaders().add("Cache-Control", "max-age=600");
+    		if(abbreviated) {
+    			exchange.getResponseHeaders().add("Content-Type", AbbreviatedMetadataInterceptor.ABBREVIATED_MEDIA_TYPE);
+    			respond(exchange, 200, "{\"name\":\"a\",\"versions\":{}}".getBytes(StandardCharsets.UTF_8));
+    		} else {
+    			respond(exchange, 200, "{\"name\":\"a\",\"readme\":\"# Readme\",\"versions\":{}}");
+    		}
+    	});
+    	try {
+    		JNPMService jnpm = JNPMService.create(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-http-cache-abbreviated"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(server))
+							.useAbbreviatedMetadata(true)
+							.packageInfoCacheSize(0)
+							.build());
+    		for(int i=0; i<2; i++) {
+    			assertTrue(jnpm.getRxService().getPackageInfoForResolution("a").blockingGet().isAbbreviated());
+    			PackageInfo full = jnpm.getPackageInfo("a");
+    			assertFalse(full.isAbbreviated());
+    			assertEquals("# Readme", full.getReadme());
+    		}
+    		//Each kind of document is requested once and marker of cache entry is not sent to the registry
+    		assertEquals(Arrays.asList("/a abbreviated", "/a"), requests);
+    		assertEquals(2, jnpm.getHttpCache().hitCount());
+    		jnpm.close();
+    	} finally {
+    		server.stop(0);
+    	}
+    }
+    
+    @Test
+    public void httpClientSettings() throws Exception {
+    	AtomicInteger inFlight = new AtomicInteger();
+    	AtomicInteger maxInFlight = new AtomicInteger();
+    	//Requests are held until the limit of requests per host is reached
+    	CountDownLatch barrier = new CountDownLatch(8);
+    	HttpServer server = startServer(exchange -> {
+    		maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    		barrier.countDown();
+    		try {
+    			barrier.await(5, TimeUnit.SECONDS);
+    		} catch (InterruptedException e) {
+    			//NOP
+    		}
+    		inFlight.decrementAndGet();
+    		String name = exchange.getRequestURI().getPath().substring(1);
+    		respond(exchange, 200, "{\"name\":\""+name+"\",\"versions\":{}}");
+    	});
+    	JNPMService original = JNPMService.instance(null);
+    	try {
+    		JNPMService jnpm = JNPMService.configure(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-http-client"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(server))
+							.httpCacheSize(0)
+							.maxRequests(32)
+							.maxRequestsPerHost(8)
+							.maxIdleConnections(8)
+							.connectTimeout(5)
+							.readTimeout(10)
+							.build());
+    		OkHttpClient client = jnpm.getHttpClient();
+    		assertEquals(32, client.dispatcher().getMaxRequests());
+    		assertEquals(8, client.dispatcher().getMaxRequestsPerHost());
+    		assertEquals(5000, client.connectTimeoutMillis());
+    		assertEquals(10000, client.readTimeoutMillis());
+    		assertTrue(client.protocols().contains(Protocol.HTTP_2));
+    		
+    		long count = Observable.range(0, 12)
+    						.flatMapMaybe(i -> jnpm.getRxService().getPackageInfo("p"+i))
+    						.count().blockingGet();
+    		assertEquals(12, count);
+    		assertEquals(8, maxInFlight.get());
+    	} finally {
+    		JNPMService.instance(original);
+    		server.stop(0);
+    	}
+    	
+    	assertFalse(JNPMSettings.builder().useHttp2(false).build().isUseHttp2());
+    }
+    
+    @Test
+    public void retriesAndAdaptiveConcurrency() throws Exception {
+    	AtomicInteger requestsA = new AtomicInteger();
+    	AtomicInteger requestsB = new AtomicInteger();
+    	AtomicInteger requestsC = new AtomicInteger();
+    	HttpServer server = startServer(exchange -> {
+    		if(exchange.getRequestURI().getPath().startsWith("/b")) {
+    			requestsB.incrementAndGet();
+    			respond(exchange, 503, (byte[])null);
+    		} else if(exchange.getRequestURI().getPath().startsWith("/c")) {
+    			requestsC.incrementAndGet();
+    			exchange.getResponseHeaders().add("Retry-After", "120");
+    			respond(exchange, 429, (byte[])null);
+    		} else if(requestsA.incrementAndGet()<=2) {
+    			exchange.getResponseHeaders().add("Retry-After", "0");
+    			respond(exchange, 429, (byte[])null);
+    		} else {
+    			respond(exchange, 200, "{}");
+    		}
+    	});
+    	try {
+    		AdaptiveConcurrencyInterceptor limiter = new AdaptiveConcurrencyInterceptor(8);
+    		OkHttpClient client = new OkHttpClient.Builder()
+    									.addInterceptor(new RetryInterceptor(3, 10, 100))
+    									.addNetworkInterceptor(limiter)
+    									.build();
+    		String url = "http://localhost:"+server.getAddress().getPort();
+    		try(okhttp3.Response response = client.newCall(new Request.Builder().url(url+"/a").build()).execute()) {
+    			assertEquals(200, response.code());
+    		}
+    		assertEquals(3, requestsA.get());
+    		assertEquals(2, limiter.getLimit("localhost"));
+    		
+    		try(okhttp3.Response response = client.newCall(new Request.Builder().url(url+"/b").build()).execute()) {
+    			assertEquals(503, response.code());
+    		}
+    		assertEquals(4, requestsB.get());
+    		assertEquals(1, limiter.getLimit("localhost"));
+    		
+    		for(int i=0; i<10; i++) {
+    			client.newCall(new Request.Builder().url(url+"/a").build()).execute().close();
+    		}
+    		assertTrue(limiter.getLimit("localhost")>1);
+    		
+    		//Not idempotent calls should not be retried
+    		client.newCall(new Request.Builder().url(url+"/b")
+    				.post(okhttp3.RequestBody.create(new byte[0], null)).build()).execute().close();
+    		assertEquals(5, requestsB.get());
+    		
+    		//Registry asks to wait longer than allowed: throttled response is returned instead of early retry
+    		try(okhttp3.Response response = client.newCall(new Request.Builder().url(url+"/c").build()).execute()) {
+    			assertEquals(429, response.code());
+    		}
+    		assertEquals(1, requestsC.get());
+    		
+    		//Not transient failures are reported at once
+    		AtomicInteger lookups = new AtomicInteger();
+    		OkHttpClient unknownHostClient = client.newBuilder()
+    									.dns(host -> {
+    										lookups.incrementAndGet();
+    										throw new UnknownHostException(host);
+    									})
+    									.build();
+    		try {
+    			unknownHostClient.newCall(new Request.Builder().url("http://unknown.host/a").build()).execute();
+    			throw new AssertionFailedError("Unknown host should fail");
+    		} catch (UnknownHostException e) {
+    			assertEquals(1, lookups.get());
+    		}
+    		
+    		//Slot is held until response body is closed and waiting for it stops on cancellation
+    		AdaptiveConcurrencyInterceptor singleLimiter = new AdaptiveConcurrencyInterceptor(1);
+    		OkHttpClient singleClient = new OkHttpClient.Builder()
+    									.addNetworkInterceptor(singleLimiter)
+    									.build();
+    		ExecutorService executor = Executors.newCachedThreadPool();
+    		try {
+    			okhttp3.Response open = singleClient.newCall(new Request.Builder().url(url+"/a").build()).execute();
+    			int served = requestsA.get();
+    			okhttp3.Call canceled = singleClient.newCall(new Request.Builder().url(url+"/a").build());
+    			Future<okhttp3.Response> waiting = executor.submit(() -> canceled.execute());
+    			awaitCondition(() -> singleLimiter.getWaiting("localhost")==1);
+    			assertEquals(served, requestsA.get());
+    			canceled.cancel();
+    			try {
+    				waiting.get(2, TimeUnit.SECONDS).close();
+    				throw new AssertionFailedError("Canceled call should fail");
+    			} catch (ExecutionException e) {
+    				assertTrue(e.getCause() instanceof IOException);
+    			}
+    			assertEquals(0, singleLimiter.getWaiting("localhost"));
+    			Future<okhttp3.Response> next = executor.submit(() -> 
+    										singleClient.newCall(new Request.Builder().url(url+"/a").build()).execute());
+    			awaitCondition(() -> singleLimiter.getWaiting("localhost")==1);
+    			assertFalse(next.isDone());
+    			assertEquals(served, requestsA.get());
+    			open.close();
+    			try(okhttp3.Response response = next.get(2, TimeUnit.SECONDS)) {
+    				assertEquals(200, response.code());
+    			}
+    		} finally {
+    			executor.shutdown();
+    		}
+    	} finally {
+    		server.stop(0);
+    	}
+    	
+    	assertEquals(Long.valueOf(2000), RetryInterceptor.parseRetryAfter("2"));
+    	assertNull(RetryInterceptor.parseRetryAfter("soon"));
+    	long delay = RetryInterceptor.parseRetryAfter(DateTimeFormatter.RFC_1123_DATE_TIME
+    										.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60)));
+    	assertTrue(delay>50000 && delay<=60000);
+    	RetryInterceptor retry = new RetryInterceptor(5, 10, 1000);
+    	for(int i=0; i<20; i++) {
+    		long value = retry.getDelay(3, null);
+    		assertTrue(value>=40 && value<=80);
+    	}
+    	assertEquals(120000, retry.getDelay(0, "120"));
+    	assertTrue(RetryInterceptor.isTransient(new SocketTimeoutException("timeout")));
+    	assertTrue(RetryInterceptor.isTransient(new ConnectException("Connection refused")));
+    	assertTrue(RetryInterceptor.isTransient(new SocketException("Connection reset")));
+    	assertTrue(RetryInterceptor.isTransient(new IOException("unexpected end of stream", new EOFException())));
+    	assertFalse(RetryInterceptor.isTransient(new UnknownHostException("unknown.host")));
+    	assertFalse(RetryInterceptor.isTransient(new SSLHandshakeException("handshake")));
+    	assertFalse(RetryInterceptor.isTransient(new UnknownServiceException("CLEARTEXT")));
+    	
+    	//Both retries and the limiter change how failures surface, so they are opt-in
+    	JNPMSettings defaults = JNPMSettings.builder().build();
+    	assertEquals(0, defaults.getMaxRetries());
+    	assertFalse(defaults.isAdaptiveConcurrency());
+    }
+
+    private static HttpServer startRegistry(String id, int code, long delay) throws IOException {
+    	return startServer(exchange -> {
+    		try {
+    			Thread.sleep(delay);
+    		} catch (InterruptedException e) {
+    			//NOP
+    		}
+    		String name = exchange.getRequestURI().getPath().substring(1);
+    		respond(exchange, code, "{\"name\":\""+name+"\",\"description\":\""+id+"\",\"versions\":{}}");
+    	});
+    }
+
+    /**
+     * Start stand-in registry on a free local port
+     * @param handler handler of all requests to the registry
+     * @return started server
+     * @throws IOException if server can't be started
+     */
+    private static HttpServer startServer(HttpHandler handler) throws IOException {
+    	HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    	server.setExecutor(Executors.newCachedThreadPool());
+    	server.createContext("/", handler);
+    	server.start();
+    	return server;
+    }
+
+    private static String urlOf(HttpServer server) {
+    	return "http://localhost:"+server.getAddress().getPort()+"/";
+    }
+
+    private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+    	exchange.getResponseHeaders().add("Content-Type", "application/json");
+    	respond(exchange, code, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+    	exchange.sendResponseHeaders(code, body!=null?body.length:-1);
+    	if(body!=null) exchange.getResponseBody().write(body);
+    	exchange.close();
+    }
+
+    /**
+     * Wait until condition is met or fail after 5 seconds
+     * @param condition condition to wait for
+     * @throws InterruptedException if waiting was interrupted
+     */
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+    	long deadline = System.currentTimeMillis() + 5000;
+    	while(!condition.getAsBoolean()) {
+    		if(System.currentTimeMillis()>deadline) throw new AssertionFailedError("Condition was not met in time");
+    		Thread.sleep(10);
+    	}
+    }
+
+    @Test
+    public void registryMirrors() throws Exception {
+    	HttpServer broken = startRegistry("broken", 500, 0);
+    	HttpServer slow = startRegistry("slow", 200, 1500);
+    	HttpServer fast = startRegistry("fast", 200, 0);
+    	String brokenUrl = urlOf(broken);
+    	String slowUrl = urlOf(slow);
+    	String fastUrl = urlOf(fast);
+    	JNPMService original = JNPMService.instance(null);
+    	try {
+    		JNPMService jnpm = JNPMService.configure(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-mirrors"+RANDOM.nextInt(999999)))
+							.registryUrl(brokenUrl)
+							.mirrorUrls(Arrays.asList(fastUrl))
+							.httpCacheSize(0)
+							.build());
+    		assertEquals("fast", jnpm.getPackageInfo("vue").getDescription());
+
+    		RegistryMirrorsInterceptor hedging = new RegistryMirrorsInterceptor(slowUrl, Arrays.asList(fastUrl),
+    																MirrorPolicy.HEDGED, 100, 95);
+    		hedging.setClient(new OkHttpClient());
+    		OkHttpClient client = new OkHttpClient.Builder().addInterceptor(hedging).build();
+    		long start = System.currentTimeMillis();
+    		try(okhttp3.Response response = client.newCall(new Request.Builder()
+    											.url(slowUrl+"vue/-/vue-2.6.11.tgz").build()).execute()) {
+    			assertEquals(200, response.code());
+    			assertTrue(response.body().string().contains("fast"));
+    			assertEquals(fast.getAddress().getPort(), response.request().url().port());
+    		}
+    		assertTrue(System.currentTimeMillis()-start<1000);
+    		//The fastest registry should be asked first for further requests
+    		assertEquals(fastUrl, hedging.getOrder().get(0).getUrl());
+
+    		RegistryMirrorsInterceptor failover = new RegistryMirrorsInterceptor(brokenUrl, Arrays.asList(brokenUrl),
+					MirrorPolicy.FAILOVER, 100, 95);
+    		failover.setClient(new OkHttpClient());
+    		client = new OkHttpClient.Builder().addInterceptor(failover).build();
+    		try(okhttp3.Response response = client.newCall(new Request.Builder().url(brokenUrl+"vue").build()).execute()) {
+    			assertEquals(500, response.code());
+    		}
+    		
+    		//Attempts are canceled together with the routed call
+    		RegistryMirrorsInterceptor canceling = new RegistryMirrorsInterceptor(slowUrl, Collections.emptyList(),
+					MirrorPolicy.FAILOVER, 100, 95);
+    		canceling.setClient(new OkHttpClient());
+    		client = new OkHttpClient.Builder().addInterceptor(canceling).callTimeout(300, TimeUnit.MILLISECONDS).build();
+    		start = System.currentTimeMillis();
+    		try {
+    			client.newCall(new Request.Builder().url(slowUrl+"vue").build()).execute().close();
+    			throw new AssertionFailedError("Call should time out");
+    		} catch (IOException e) {
+    			assertTrue(System.currentTimeMillis()-start<1000);
+    		}
+    	} finally {
+    		JNPMService.instance(original);
+    		broken.stop(0);
+    		slow.stop(0);
+    		fast.stop(0);
+    	}
+    }
+
+    @Test
+    public void registryMirrorsAuthorization() throws Exception {
+    	List<String> authorizations = new ArrayList<>();
+    	HttpServer broken = startRegistry("broken", 500, 0);
+    	HttpServer mirror = startServer(exchange -> {
+    		synchronized (authorizations) {
+    			authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+    		}
+    		respond(exchange, 200, "{\"name\":\"vue\",\"description\":\"mirror\",\"versions\":{}}");
+    	});
+    	try {
+    		JNPMService jnpm = JNPMService.create(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-mirrors"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(broken))
+							.mirrorUrls(Arrays.asList(urlOf(mirror)))
+							.username("user")
+							.password("secret")
+							.maxRetries(0)
+							.httpCacheSize(0)
+							.build());
+    		assertEquals("mirror", jnpm.getPackageInfo("vue").getDescription());
+    		//Credentials of the primary registry are not sent to the mirror on another host
+    		assertEquals(Arrays.asList((String)null), authorizations);
+    	} finally {
+    		broken.stop(0);
+    		mirror.stop(0);
+    	}
+    }
+
+    @Test
+    public void scopedRegistries() throws Exception {
+    	List<String> authorizations = new ArrayList<>();
+    	HttpServer internal = startServer(exchange -> {
+    		synchronized (authorizations) {
+    			authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+    		}
+    		respond(exchange, 200, "{\"name\":\"@ourcorp/widgets\",\"description\":\"internal\",\"versions\":{}}");
+    	});
+    	HttpServer publicRegistry = startRegistry("public", 200, 0);
+    	JNPMService original = JNPMService.instance(null);
+    	try {
+    		String internalUrl = "http://localhost:"+internal.getAddress().getPort();
+    		JNPMService jnpm = JNPMService.configure(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-scopes"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(publicRegistry))
+							.scopedRegistries(Arrays.asList(ScopedRegistry.builder()
+															.scope("ourcorp")
+															.registryUrl(internalUrl)
+															.username("token")
+															.build()))
+							.httpCacheSize(0)
+							.build());
+    		assertEquals("internal", jnpm.getPackageInfo("@ourcorp/widgets").getDescription());
+    		assertEquals("public", jnpm.getPackageInfo("vue").getDescription());
+    		assertEquals("public", jnpm.getPackageInfo("@angular/core").getDescription());
+    		assertEquals(Arrays.asList("Bearer token"), authorizations);
+
+    		OkHttpClient internalClient = jnpm.getHttpClient("@ourcorp/widgets");
+    		assertNotSame(jnpm.getHttpClient(), internalClient);
+    		assertNotSame(jnpm.getHttpClient().connectionPool(), internalClient.connectionPool());
+    		assertNotSame(jnpm.getHttpClient().dispatcher(), internalClient.dispatcher());
+    		assertSame(jnpm.getHttpClient(), jnpm.getHttpClient("@angular/core"));
+    	} finally {
+    		JNPMService.instance(original);
+    		internal.stop(0);
+    		publicRegistry.stop(0);
+    	}
+    	assertEquals("@ourcorp", ScopedRegistry.getScopeOf("@ourcorp/widgets"));
+    	assertNull(ScopedRegistry.getScopeOf("vue"));
+    }
+
+    @Test
+    public void blockingClient() throws Exception {
+    	Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    	Map<String, String> documents = new HashMap<>();
+    	documents.put("/a", "{\"name\":\"a\",\"readme\":\"# Readme\",\"dist-tags\":{\"latest\":\"1.1.0\"},\"versions\":{"
+    						+"\"1.0.0\":{\"name\":\"a\",\"version\":\"1.0.0\"},"
+    						+"\"1.1.0\":{\"name\":\"a\",\"version\":\"1.1.0\",\"dependencies\":{\"b\":\"^2.0.0\"}}}}");
+    	documents.put("/b", "{\"name\":\"b\",\"dist-tags\":{\"latest\":\"2.0.1\"},\"versions\":{"
+    						+"\"2.0.1\":{\"name\":\"b\",\"version\":\"2.0.1\"}}}");
+    	documents.put("/b/2.0.1", "{\"name\":\"b\",\"version\":\"2.0.1\"}");
+    	documents.put("/-/package/b/dist-tags", "{\"latest\":\"2.0.1\"}");
+    	HttpServer server = startServer(exchange -> {
+    		String path = exchange.getRequestURI().getPath();
+    		requests.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+    		String document = documents.get(path);
+    		respond(exchange, document!=null?200:404, document!=null?document:"{}");
+    	});
+    	JNPMService original = JNPMService.instance(null);
+    	try {
+    		JNPMService jnpm = JNPMService.configure(JNPMSettings.builder()
+							.homeDirectory(Paths.get("target", ".jnpm-blocking"+RANDOM.nextInt(999999)))
+							.registryUrl(urlOf(server))
+							.httpCacheSize(0)
+							.build());
+    		BlockingJNPMClient client = jnpm.getBlockingClient();
+    		assertNull(client.getPackageInfo("missing"));
+    		assertNull(client.bestMatch("missing@^1.0.0"));
+    		assertEquals("2.0.1", client.bestMatch("b", "latest").getVersionAsString());
+    		assertEquals("2.0.1", client.bestMatch("b@2.0.1").getVersionAsString());
+    		assertEquals(1, requests.get("/b/2.0.1").get());
+    		assertNull(requests.get("/b"));
+
+    		//Straightforward recursive resolution executed on plain threads
+    		VersionInfo root = client.bestMatch("a", "^1.0.0");
+    		assertEquals("1.1.0", root.getVersionAsString());
+    		ExecutorService executor = Executors.newFixedThreadPool(4);
+    		try {
+    			List<Future<VersionInfo>> dependencies = new ArrayList<>();
+    			for (Map.Entry<String, String> dependency : root.getDependencies().entrySet()) {
+    				dependencies.add(executor.submit(() -> client.bestMatch(dependency.getKey(), dependency.getValue())));
+    			}
+    			assertEquals(1, dependencies.size());
+    			assertEquals("2.0.1", dependencies.get(0).get().getVersionAsString());
+    		} finally {
+    			executor.shutdown();
+    		}
+
+    		//Caches are shared with asynchronous API: nothing is requested again
+    		assertSame(root, jnpm.getRxService().bestMatch("a", "^1.0.0").blockingGet());
+    		assertSame(client.getPackageInfo("b"), jnpm.getPackageInfo("b"));
+    		assertEquals(client.retrieveVersions("a@>=1.0.0"), jnpm.retrieveVersions("a@>=1.0.0"));
+    		assertEquals(1, requests.get("/a").get());
+    		assertEquals(1, requests.get("/b").get());
+    		
+    		//Resolution profile is applied without abbreviated metadata too
+    		assertEquals("# Readme", client.getPackageInfoForResolution("a").getReadme());
+    		JNPMService resolving = JNPMService.create(jnpm.getSettings().toBuilder()
+    											.parsingProfile(ParsingProfile.RESOLUTION).build());
+    		PackageInfo light = resolving.getBlockingClient().getPackageInfoForResolution("a");
+    		assertNull(light.getReadme());
+    		assertTrue(light.getDetails().isEmpty());
+    		assertEquals("^2.0.0", light.getVersions().get("1.1.0").getDependencies().get("b"));
+    	} finally {
+    		JNPMService.instance(original);
+    		server.stop(0);
+    	}
+    }
+
+    @Test
+    public void standaloneServices() throws Exception {
+    	HttpServer one = startRegistry("one", 200, 0);
+    	HttpServer two = startRegistry("two", 200, 0);
+    	try {
+    		Path home = Paths.get("target", ".jnpm-standalone"+RANDOM.nextInt(999999));
+    		JNPMSettings oneSettings = JNPMSettings.builder()
+    								.homeDirectory(home)
+    								.registryUrl(urlOf(one))
+    								.build();
+    		JNPMSettings twoSettings = oneSettings.toBuilder()
+    								.registryUrl(urlOf(two))
+    								.build();
+    		JNPMService defaultService = JNPMService.instance();
+    		JNPMService first = JNPMService.create(oneSettings);
+    		JNPMService second = JNPMService.create(twoSettings);
+    		JNPMService firstAgain = JNPMService.create(oneSettings.toBuilder().maxRequests(8).build());
+    		assertSame(defaultService, JNPMService.instance());
+    		assertEquals("one", first.getPackageInfo("vue").getDescription());
+    		assertEquals("two", second.getPackageInfo("vue").getDescription());
+
+    		//Services of the same registry share everything they can
+    		assertTrue(oneSettings.isSameRegistry(firstAgain.getSettings()));
+    		assertFalse(oneSettings.isSameRegistry(twoSettings));
+    		assertSame(first.getPackageInfoCache(), firstAgain.getPackageInfoCache());
+    		assertSame(first.getResolutionMemo(), firstAgain.getResolutionMemo());
+    		assertSame(first.getPackageInfo("vue"), firstAgain.getPackageInfo("vue"));
+    		assertSame(first.getHttpClient().connectionPool(), firstAgain.getHttpClient().connectionPool());
+    		assertNotSame(first.getPackageInfoCache(), second.getPackageInfoCache());
+    		assertNotSame(first.getHttpClient().connectionPool(), second.getHttpClient().connectionPool());
+    		//HTTP cache and tarballs directory are shared through the same home directory
+    		assertSame(first.getHttpCache(), second.getHttpCache());
+
+    		VersionInfo version = new VersionInfo();
+    		version.setName("a");
+    		version.setVersionAsString("1.0.0");
+    		TraversalTree tree = second.getRxService().traverse(TraverseDirection.WIDER, DEPENDENCIES, version)
+    										.blockingFirst();
+    		assertSame(second, tree.getContext().getService());
+    		assertSame(defaultService, new TraversalContext(TraverseDirection.WIDER, DEPENDENCIES).getService());
+    	} finally {
+    		one.stop(0);
+    		two.stop(0);
+    	}
+    }
+
+    private static VersionInfo version(String name, String version, String... dependencies) {
+    	VersionInfo ret = new VersionInfo();
+    	ret.setName(name);
+    	ret.setVersionAsString(version);
+    	Map<String, String> deps = new LinkedHashMap<>();
+    	for (int i = 0; i < dependencies.length; i+=2) deps.put(dependencies[i], dependencies[i+1]);
+    	ret.setDependencies(deps);
+    	return ret;
+    }
+
+    @Test
+    public void frontierTraversal() throws Exception {
+    	VersionInfo root = version("root", "1.0.0", "a", "^1.0.0", "b", "^1.0.0", "c", "^1.0.0");
+    	VersionInfo a = version("a", "1.0.0", "d", "^1.0.0");
+    	VersionInfo b = version("b", "1.1.0", "d", "^1.0.0");
+    	VersionInfo c = version("c", "1.2.0", "d", "^1.0.0");
+    	VersionInfo d = version("d", "1.2.0");
+    	Map<String, VersionInfo> versions = new HashMap<>();
+    	for (VersionInfo v : Arrays.asList(a, b, c, d)) versions.put(v.getName(), v);
+    	AtomicInteger inFlight = new AtomicInteger();
+    	AtomicInteger maxInFlight = new AtomicInteger();
+    	RxJNPMService rxService = mock(RxJNPMService.class);
+    	when(rxService.bestMatch(anyString(), anyString())).thenAnswer(invocation -> 
+    				Maybe.fromCallable(() -> {
+    						maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    						Thread.sleep(50);
+    						inFlight.decrementAndGet();
+    						return versions.get(invocation.getArgument(0, String.class));
+    					}).subscribeOn(Schedulers.io()));
+    	JNPMService jnpm = spy(JNPMService.instance());
+    	doReturn(rxService).when(jnpm).getRxService();
+
+    	TraversalContext ctx = new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES, root);
+    	List<TraversalTree> trace = FrontierTraversal.traverse(ctx, 16).toList().blockingGet();
+    	assertEquals(Arrays.asList("root", "a", "b", "c", "d", "d", "d"),
+    				 trace.stream().map(t -> t.getVersion().getName()).collect(Collectors.toList()));
+    	assertEquals(Arrays.asList(0, 1, 1, 1, 2, 2, 2),
+    				 trace.stream().map(TraversalTree::getDependencyLevel).collect(Collectors.toList()));
+    	//Only the first occurrence of a package is traversed further
+    	assertFalse(trace.get(4).isDuplicate());
+    	assertTrue(trace.get(5).isDuplicate() && trace.get(6).isDuplicate());
+    	assertSame(a, trace.get(4).getDepender().getVersion());
+    	//Level is resolved concurrently and shared dependencies are resolved once
+    	assertEquals(3, maxInFlight.get());
+    	verify(rxService, times(1)).bestMatch("d", "^1.0.0");
+    	verify(rxService, times(4)).bestMatch(anyString(), anyString());
+    }
+
+    @Test
+    public void traversalEdgesDeduplication() throws Exception {
+    	VersionInfo root = version("root", "1.0.0", "a", "^1.0.0", "b", "^1.0.0");
+    	VersionInfo a = version("a", "1.0.0", "c", "^1.0.0", "b", "^1.0.0");
+    	VersionInfo b = version("b", "1.1.0", "c", "^1.0.0");
+    	VersionInfo c = version("c", "1.2.0");
+    	Map<String, VersionInfo> versions = new HashMap<>();
+    	for (VersionInfo v : Arrays.asList(a, b, c)) versions.put(v.getName(), v);
+    	RxJNPMService rxService = mock(RxJNPMService.class);
+    	when(rxService.bestMatch(anyString(), anyString())).thenAnswer(invocation -> 
+    				Maybe.fromCallable(() -> versions.get(invocation.getArgument(0, String.class))));
+    	JNPMService jnpm = spy(JNPMService.instance());
+    	doReturn(rxService).when(jnpm).getRxService();
+
+    	RxJNPMService engine = JNPMService.instance().getRxService();
+    	for (TraverseDirection direction : TraverseDirection.values()) {
+    		clearInvocations(rxService);
+    		TraversalContext ctx = new TraversalContext(jnpm, direction, DEPENDENCIES, root);
+    		List<TraversalTree> trace = engine.traverse(ctx).toList().blockingGet();
+    		assertEquals(direction.name(), 4, trace.stream().filter(t -> !t.isDuplicate()).count());
+    		verify(rxService, times(1)).bestMatch("c", "^1.0.0");
+    		verify(rxService, times(1)).bestMatch("b", "^1.0.0");
+    	}
+
+    	TraversalContext ctx = new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES, root);
+    	FrontierTraversal.traverse(ctx, 16).blockingSubscribe();
+    	TraversalStats stats = ctx.getStats();
+    	//Edges: root->a, root->b, a->c, a->b, b->c: c^1.0.0 is repeated within the same level
+    	assertEquals(4, stats.getEdges());
+    	assertEquals(3, stats.getResolvedEdges());
+    	assertEquals(1, stats.getShortCircuitedEdges());
+    	assertEquals(4, stats.getTraversedVersions());
+    }
+
+    @Test
+    public void traversalPrefetchValidation() throws Exception {
+    	JNPMSettings settings = JNPMSettings.builder()
+    							.homeDirectory(Paths.get("target", ".jnpm-prefetch"+RANDOM.nextInt(999999)))
+    							.traversalPrefetch(0)
+    							.build();
+    	try {
+    		JNPMService.create(settings);
+    		throw new AssertionFailedError("Traversal prefetch should be validated");
+    	} catch (IllegalArgumentException e) {
+    		assertTrue(e.getMessage(), e.getMessage().contains("prefetch should be positive"));
+    	}
+    	try {
+    		JNPMService.instance().getRxService()
+    				.traverseFlowable(new TraversalContext(TraverseDirection.WIDER, DEPENDENCIES), -1);
+    		throw new AssertionFailedError("Prefetch should be validated");
+    	} catch (IllegalArgumentException e) {
+    		//Expected
+    	}
+    	//Option is checked before the default instance is touched
+    	assertEquals(CommandLine.ExitCode.USAGE, 
+    				 new CommandLine(new JNPM()).execute("--traversal-prefetch", "0", "download", "a"));
+    }
+
+    @Test
+    public void settingsValidation() throws Exception {
+    	JNPMSettings.builder().build().validate();
+    	JNPMSettings.builder().maxRetries(0).httpCacheSize(0).packageInfoCacheTTL(0).hedgePercentile(100).build().validate();
+    	List<JNPMSettings> invalid = Arrays.asList(
+    			JNPMSettings.builder().maxRetries(-1).build(),
+    			JNPMSettings.builder().maxRequests(0).build(),
+    			JNPMSettings.builder().maxRequestsPerHost(0).build(),
+    			JNPMSettings.builder().retryBackoff(-1).build(),
+    			JNPMSettings.builder().packageInfoCacheSize(-1).build(),
+    			JNPMSettings.builder().packageInfoCacheTTL(-1).build(),
+    			JNPMSettings.builder().distTagsCacheTTL(-1).build(),
+    			JNPMSettings.builder().searchCacheTTL(-1).build(),
+    			JNPMSettings.builder().httpCacheSize(-1).build(),
+    			JNPMSettings.builder().hedgePercentile(-1).build(),
+    			JNPMSettings.builder().hedgePercentile(101).build());
+    	for (JNPMSettings settings : invalid) {
+    		try {
+    			settings.validate();
+    			throw new AssertionFailedError("Settings should not be valid: "+settings);
+    		} catch (IllegalArgumentException e) {
+    			assertTrue(e.getMessage(), e.getMessage().contains("but was"));
+    		}
+    	}
+    	assertEquals(CommandLine.ExitCode.USAGE, 
+    				 new CommandLine(new JNPM()).execute("--max-requests", "0", "download", "a"));
+    }
+
+    @Test
+    public void traversalEdgesErrorsAreRetried() throws Exception {
+    	VersionInfo b = version("b", "1.1.0");
+    	AtomicInteger calls = new AtomicInteger();
+    	RxJNPMService rxService = mock(RxJNPMService.class);
+    	when(rxService.bestMatch(anyString(), anyString())).thenAnswer(invocation -> 
+    				Maybe.fromCallable(() -> {
+    					if(calls.incrementAndGet()==1) throw new IOException("Transient failure");
+    					return b;
+    				}));
+    	JNPMService jnpm = spy(JNPMService.instance());
+    	doReturn(rxService).when(jnpm).getRxService();
+
+    	TraversalContext ctx = new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES);
+    	int hashCode = ctx.hashCode();
+    	ctx.resolve("b", "^1.0.0").test().assertError(IOException.class);
+    	//Failed edge is resolved again, successful one is remembered
+    	ctx.resolve("b", "^1.0.0").test().assertResult(b);
+    	ctx.resolve("b", "^1.0.0").test().assertResult(b);
+    	verify(rxService, times(2)).bestMatch("b", "^1.0.0");
+    	assertEquals(1, ctx.getStats().getResolvedEdges());
+    	//Caches of the traversal are not part of its identity
+    	assertEquals(hashCode, ctx.hashCode());
+    	assertEquals(ctx, new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES));
+    	assertFalse(ctx.toString().contains("^1.0.0"));
+    }
+
+    private static JNPMService mockedResolution(Map<String, VersionInfo> versions) {
+    	return mockedResolution(versions, withSettings());
+    }
+
+    private static JNPMService mockedResolution(Map<String, VersionInfo> versions, MockSettings settings) {
+    	Map<String, VersionInfo> byVersion = new HashMap<>();
+    	for (VersionInfo v : versions.values()) byVersion.put(v.getName()+"@"+v.getVersionAsString(), v);
+    	RxJNPMService rxService = mock(RxJNPMService.class, settings);
+    	when(rxService.bestMatch(anyString(), anyString())).thenAnswer(invocation -> {
+    		VersionInfo version = versions.get(invocation.getArgument(0, String.class)+"@"+invocation.getArgument(1, String.class));
+    		return version!=null?Maybe.just(version):Maybe.empty();
+    	});
+    	when(rxService.getVersionInfo(anyString(), anyString())).thenAnswer(invocation -> {
+    		VersionInfo version = byVersion.get(invocation.getArgument(0, String.class)+"@"+invocation.getArgument(1, String.class));
+    		return version!=null?Maybe.just(version):Maybe.empty();
+    	});
+    	JNPMService jnpm = mock(JNPMService.class, settings.spiedInstance(JNPMService.instance())
+    															.defaultAnswer(CALLS_REAL_METHODS));
+    	doReturn(rxService).when(jnpm).getRxService();
+    	return jnpm;
+    }
+
+    @Test
+    public void traversalHoisting() throws Exception {
+    	VersionInfo root = version("root", "1.0.0", "a", "^1.0.0", "c", "^1.0.0");
+    	Map<String, VersionInfo> versions = new HashMap<>();
+    	versions.put("a@^1.0.0", version("a", "1.0.0", "b", "^1.0.0"));
+    	versions.put("c@^1.0.0", version("c", "1.0.0", "b", "^2.0.0"));
+    	versions.put("b@^1.0.0", version("b", "1.0.0"));
+    	versions.put("b@^2.0.0", version("b", "2.0.0"));
+    	TraversalContext ctx = new TraversalContext(mockedResolution(versions), TraverseDirection.WIDER, DEPENDENCIES, root);
+    	Map<String, TraversalTree> trees = new HashMap<>();
+    	FrontierTraversal.traverse(ctx, 16).blockingForEach(t -> trees.put(t.getVersion().getName()
+    																	+"@"+t.getVersion().getVersionAsString(), t));
+    	//Everything is hoisted to the top unless other version is already there
+    	for (String hoisted : Arrays.asList("root@1.0.0", "a@1.0.0", "c@1.0.0", "b@1.0.0")) {
+    		assertSame(hoisted, ctx, trees.get(hoisted).getParent());
+    		assertEquals(hoisted, 0, trees.get(hoisted).getLevel());
+    	}
+    	TraversalTree b2 = trees.get("b@2.0.0");
+    	assertSame(trees.get("c@1.0.0"), b2.getParent());
+    	assertEquals(1, b2.getLevel());
+    	assertEquals(2, b2.getDependencyLevel());
+
+    	//Synthetic graph: 5000 packages with 2 versions each
+    	int packages = 5000;
+    	Random random = new Random(42);
+    	versions.clear();
+    	for (int i = 0; i < packages; i++) {
+    		for (int major = 1; major <= 2; major++) {
+    			String[] deps = new String[6];
+    			for (int j = 0; j < deps.length; j+=2) {
+    				deps[j] = "p"+random.nextInt(packages);
+    				deps[j+1] = "^"+(1+random.nextInt(2))+".0.0";
+    			}
+    			versions.put("p"+i+"@^"+major+".0.0", version("p"+i, major+".0.0", deps));
+    		}
+    	}
+    	ctx = new TraversalContext(mockedResolution(versions), TraverseDirection.WIDER, DEPENDENCIES,
+    								versions.get("p0@^1.0.0"), versions.get("p1@^2.0.0"));
+    	long start = System.currentTimeMillis();
+    	List<TraversalTree> trace = FrontierTraversal.traverse(ctx, 16).toList().blockingGet();
+    	ILogger.getLogger().log("Traversal of "+trace.size()+" nodes took "+(System.currentTimeMillis()-start)+"ms");
+    	assertTrue(ctx.getStats().getTraversedVersions()>packages);
+    	for (TraversalTree tree : trace) {
+    		//Node is placed to the depender or to one of its ancestors
+    		AbstractTraversalNode node = tree.getDepender()!=null?tree.getDepender():ctx;
+    		while(node!=null && node!=tree.getParent()) node = node.getParent();
+    		assertSame(tree.getParent(), node);
+    		assertEquals(tree.getParent().getLevel()+1, tree.getLevel());
+    	}
+    }
+
+    @Test
+    public void compactDependencyGraph() throws Exception {
+    	int packages = 2000;
+    	Random random = new Random(7);
+    	Map<String, VersionInfo> versions = new HashMap<>();
+    	for (int i = 0; i < packages; i++) {
+    		for (int major = 1; major <= 2; major++) {
+    			String[] deps = new String[8];
+    			for (int j = 0; j < deps.length; j+=2) {
+    				deps[j] = "p"+random.nextInt(packages);
+    				deps[j+1] = "^"+(1+random.nextInt(2))+".0.0";
+    			}
+    			versions.put("p"+i+"@^"+major+".0.0", version("p"+i, major+".0.0", deps));
+    		}
+    	}
+    	JNPMService jnpm = mockedResolution(versions);
+    	VersionInfo[] roots = {versions.get("p0@^1.0.0"), versions.get("p1@^2.0.0")};
+    	DependencyGraph graph = DependencyGraph.build(jnpm.getRxService(), DEPENDENCIES, 16, roots).blockingGet();
+    	TraversalContext ctx = new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES, roots);
+    	List<TraversalTree> expected = FrontierTraversal.traverse(ctx, 16).toList().blockingGet();
+    	assertEquals(ctx.getStats().getTraversedVersions(), graph.size());
+    	assertEquals(2, graph.getRoots().count());
+    	assertTrue(graph.getPackagesCount()<=packages);
+    	assertEquals(graph.getEdgesCount(), IntStream.range(0, graph.size())
+    												.map(id -> (int)graph.getDependencies(id).count()).sum());
+
+    	//Views of the graph are the same as results of the traversal
+    	Function<TraversalTree, String> describe = t -> t.getVersion().getName()+"@"+t.getVersion().getVersionAsString()
+    											+" level="+t.getLevel()+" dependencyLevel="+t.getDependencyLevel()
+    											+" duplicate="+t.isDuplicate();
+    	List<TraversalTree> views = graph.traverse(jnpm).toList().blockingGet();
+    	assertEquals(expected.stream().map(describe).collect(Collectors.toList()),
+    				 views.stream().map(describe).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void dependencyGraphRetainedSize() throws Exception {
+    	int packages = 20000;
+    	Random random = new Random(11);
+    	Map<String, VersionInfo> versions = new HashMap<>();
+    	for (int i = 0; i < packages; i++) {
+    		String[] deps = new String[8];
+    		for (int j = 0; j < deps.length; j+=2) {
+    			deps[j] = "p"+random.nextInt(packages);
+    			deps[j+1] = "^1.0.0";
+    		}
+    		versions.put("p"+i+"@^1.0.0", version("p"+i, "1.0.0", deps));
+    	}
+    	//Mocks should not remember invocations: otherwise they would be counted as retained
+    	JNPMService jnpm = mockedResolution(versions, withSettings().stubOnly());
+    	VersionInfo[] roots = {versions.get("p0@^1.0.0"), versions.get("p1@^1.0.0")};
+    	
+    	long before = usedHeap();
+    	DependencyGraph graph = DependencyGraph.build(jnpm.getRxService(), DEPENDENCIES, 16, roots).blockingGet();
+    	long graphSize = usedHeap() - before;
+    	TraversalContext ctx = new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES, roots);
+    	List<TraversalTree> trees = FrontierTraversal.traverse(ctx, 16).toList().blockingGet();
+    	long traversalSize = usedHeap() - before - graphSize;
+    	
+    	assertEquals(ctx.getStats().getTraversedVersions(), graph.size());
+    	assertTrue(graph.size()>packages/2);
+    	assertTrue(trees.size()>graph.size());
+    	assertTrue(graph+" retains "+graphSize+" bytes, traversal retains "+traversalSize+" bytes", 
+    				graphSize*10<traversalSize);
+    	System.out.println(graph+" retains "+graphSize+" bytes, traversal retains "+traversalSize+" bytes");
+    }
+
+    private static long usedHeap() throws InterruptedException {
+    	Runtime runtime = Runtime.getRuntime();
+    	for (int i = 0; i < 3; i++) {
+    		System.gc();
+    		Thread.sleep(50);
+    	}
+    	return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void backpressuredTraversal() throws Exception {
+    	String[] rootDeps = new String[20];
+    	Map<String, VersionInfo> versions = new HashMap<>();
+    	for (int i = 0; i < 10; i++) {
+    		rootDeps[i*2] = "p"+i;
+    		rootDeps[i*2+1] = "^1.0.0";
+    		versions.put("p"+i+"@^1.0.0", version("p"+i, "1."+i+".0", "q"+i, "^1.0.0"));
+    		versions.put("q"+i+"@^1.0.0", version("q"+i, "2."+i+".0"));
+    	}
+    	VersionInfo root = version("root", "1.0.0", rootDeps);
+    	RxJNPMService engine = JNPMService.instance().getRxService();
+    	JNPMService jnpm = mockedResolution(versions);
+    	TraversalContext ctx = new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES, root);
+    	TestSubscriber<TraversalTree> subscriber = engine.traverseFlowable(ctx, 2).test(1);
+    	//Next level is not resolved until the current one is requested
+    	subscriber.assertValueCount(1).assertNotComplete();
+    	verify(jnpm.getRxService(), times(10)).bestMatch(anyString(), anyString());
+    	subscriber.requestMore(Long.MAX_VALUE).assertComplete().assertNoErrors();
+    	verify(jnpm.getRxService(), times(20)).bestMatch(anyString(), anyString());
+    	List<TraversalTree> expected = FrontierTraversal.traverse(
+    			new TraversalContext(jnpm, TraverseDirection.WIDER, DEPENDENCIES, root), 16).toList().blockingGet();
+    	Function<TraversalTree, String> describe = t -> t.getVersion().getName()+" level="+t.getLevel();
+    	assertEquals(expected.stream().map(describe).collect(Collectors.toList()),
+    				 subscriber.values().stream().map(describe).collect(Collectors.toList()));
+
+    	//Deeper traversal resolves dependencies of a package only when the package is requested
+    	jnpm = mockedResolution(versions);
+    	ctx = new TraversalContext(jnpm, TraverseDirection.DEEPER, DEPENDENCIES, root);
+    	subscriber = engine.traverseFlowable(ctx, 2).test(2);
+    	subscriber.assertValueCount(2).assertNotComplete();
+    	verify(jnpm.getRxService(), times(11)).bestMatch(anyString(), anyString());
+    	verify(jnpm.getRxService(), never()).bestMatch("q1", "^1.0.0");
+    	subscriber.requestMore(Long.MAX_VALUE).assertComplete().assertNoErrors();
+    	verify(jnpm.getRxService(), times(20)).bestMatch(anyString(), anyString());
+    	assertEquals(Arrays.asList("root", "p0", "q0", "p1", "q1"), subscriber.values().stream().limit(5)
+    													.map(t -> t.getVersion().getName()).collect(Collectors.toList()));
+    }
+
     @Test
     @Ignore
     public void testCustomRepository() throws Exception {
@@ -174,6 +174,26 @@ public class CDNTest {
 		assertEquals(null, reqInfo.getDefaultPath(mockVersion));
 	}
 	
+	@Test
+	public void testDefaultPathByOwnService() {
+		CDNRequest reqInfo = CDNRequest.valueOf("/vue@2.6.11");
+		VersionInfo abbreviated = new VersionInfo();
+		abbreviated.setName("vue");
+		abbreviated.setVersionAsString("2.6.11");
+		abbreviated.setAbbreviated(true);
+		VersionInfo full = new VersionInfo();
+		full.setName("vue");
+		full.setVersionAsString("2.6.11");
+		full.setUnpkg("dist/vue.js");
+		
+		// Full version information is retrieved from the service of the servlet, not from the default one
+		JNPMService service = mock(JNPMService.class);
+		when(service.getVersionInfo("vue", "2.6.11")).thenReturn(full);
+		assertEquals("dist/vue.js", reqInfo.getDefaultPath(service, abbreviated));
+		assertEquals("/vue@2.6.11/dist/vue.js", reqInfo.buildRedirectUrl(service, abbreviated));
+		verify(service, times(2)).getVersionInfo("vue", "2.6.11");
+	}
+	
 	@Test
 	public void testServletRedirect() throws Exception {
 		HttpServletRequest request = mock(HttpServletRequest.class);       
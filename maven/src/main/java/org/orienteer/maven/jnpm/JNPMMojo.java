@@ -11,25 +11,32 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
+import org.orienteer.jnpm.ExecutionModel;
 import org.orienteer.jnpm.IInstallationStrategy;
 import org.orienteer.jnpm.ILogger;
 import org.orienteer.jnpm.InstallationStrategy;
 import org.orienteer.jnpm.JNPMService;
 import org.orienteer.jnpm.JNPMSettings;
+import org.orienteer.jnpm.MirrorPolicy;
+import org.orienteer.jnpm.ParsingProfile;
 import org.orienteer.jnpm.RxJNPMService;
+import org.orienteer.jnpm.ScopedRegistry;
 import org.orienteer.jnpm.traversal.ITraversalRule;
 import org.orienteer.jnpm.traversal.TraversalTree;
 import org.orienteer.jnpm.traversal.TraverseDirection;
 
-import io.reactivex.Observable;
+import io.reactivex.Flowable;
 import okhttp3.logging.HttpLoggingInterceptor.Level;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Goal to download, extract and attach npm resources
@@ -104,6 +111,97 @@ public class JNPMMojo
 	@Parameter(defaultValue = "true")
 	private boolean useCache;
 	
+	/**
+	 * Request abbreviated packages metadata for versions resolution: much less data to download and parse
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean useAbbreviatedMetadata;
+	
+	/**
+	 * Profile for parsing of metadata used for versions resolution: FULL or RESOLUTION (keep only required fields)
+	 */
+	@Parameter(defaultValue = "FULL")
+	private ParsingProfile parsingProfile;
+	
+	/**
+	 * Use HTTP/2 if registry supports it
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean useHttp2;
+	
+	/**
+	 * Maximal number of idle connections to keep in the pool
+	 */
+	@Parameter(defaultValue = "16")
+	private int maxIdleConnections;
+	
+	/**
+	 * Time in seconds to keep idle connections alive
+	 */
+	@Parameter(defaultValue = "300")
+	private long keepAliveDuration;
+	
+	/**
+	 * Maximal number of concurrent requests
+	 */
+	@Parameter(defaultValue = "64")
+	private int maxRequests;
+	
+	/**
+	 * Maximal number of concurrent requests per host
+	 */
+	@Parameter(defaultValue = "16")
+	private int maxRequestsPerHost;
+	
+	/**
+	 * Connect timeout in seconds
+	 */
+	@Parameter(defaultValue = "30")
+	private long connectTimeout;
+	
+	/**
+	 * Read timeout in seconds
+	 */
+	@Parameter(defaultValue = "120")
+	private long readTimeout;
+	
+	/**
+	 * Write timeout in seconds
+	 */
+	@Parameter(defaultValue = "120")
+	private long writeTimeout;
+	
+	/**
+	 * Mirrors of the registry to be used if the registry is slow or not available
+	 */
+	@Parameter
+	private List<String> mirrorUrls;
+	
+	/**
+	 * Policy of selection between the registry and mirrors: FAILOVER, LATENCY or HEDGED
+	 */
+	@Parameter(defaultValue = "FAILOVER")
+	private MirrorPolicy mirrorPolicy;
+	
+	/**
+	 * Threads to handle metadata, downloads and extraction on: IO, BOUNDED or VIRTUAL_THREADS (JDK 21+)
+	 */
+	@Parameter(defaultValue = "IO")
+	private ExecutionModel executionModel;
+	
+	/**
+	 * Number of traversed packages to be resolved ahead of installation
+	 */
+	@Parameter(defaultValue = "64")
+	private int traversalPrefetch;
+	
+	/**
+	 * Registries for packages of scopes: scope to URL of the registry.
+	 * Credentials are taken from a server with id equal to the scope, if defined
+	 */
+	@Parameter
+	private Map<String, String> scopedRegistries;
+	
 	/**
 	 * What should be included as resources (Default: empty - means everything)
 	 */
@@ -172,14 +270,38 @@ public class JNPMMojo
     	} else {
     		targetPath = outputDirectoryPath;
     	}
-    	if(!JNPMService.isConfigured())
-    		JNPMService.configure(prepareSettingsBuilder().build());
-    	RxJNPMService rxService = JNPMService.instance().getRxService();
-    	getLog().info("Prod="+getProd+" dev="+getDev+" optional="+getOptional+" peer="+getPeer);
-    	ITraversalRule rule = ITraversalRule.getRuleFor(getProd, getDev, getOptional, getPeer);
-    	Observable<TraversalTree> observable = rxService.traverse(TraverseDirection.WIDER, rule, packages)
-				.doOnNext(t->ILogger.getLogger().log(String.format("Downloading %s@%s\n", t.getVersion().getName(), t.getVersion().getVersionAsString())));
-		observable.flatMapCompletable(t -> t.install(targetPath, strategy)).blockingAwait();
+    	if(traversalPrefetch<=0) 
+    		throw new MojoExecutionException("'traversalPrefetch' should be positive, but was "+traversalPrefetch);
+    	JNPMSettings jnpmSettings = prepareSettingsBuilder().build();
+    	JNPMService jnpm;
+    	boolean ownService = false;
+    	if(!JNPMService.isConfigured()) {
+    		jnpm = JNPMService.configure(jnpmSettings);
+    		if(jnpm==null) throw new MojoExecutionException("Can't configure JNPM: check settings");
+    	} else if(JNPMService.instance().getSettings().isSameRegistry(jnpmSettings)) {
+    		jnpm = JNPMService.instance();
+    	} else {
+    		//Other module of the reactor uses another registry
+    		try {
+    			jnpm = JNPMService.create(jnpmSettings);
+    			ownService = true;
+    		} catch (IOException e) {
+    			throw new MojoExecutionException("Can't create JNPM service", e);
+    		}
+    	}
+    	try {
+	    	RxJNPMService rxService = jnpm.getRxService();
+	    	getLog().info("Prod="+getProd+" dev="+getDev+" optional="+getOptional+" peer="+getPeer);
+	    	ITraversalRule rule = ITraversalRule.getRuleFor(getProd, getDev, getOptional, getPeer);
+	    	Flowable<TraversalTree> flowable = rxService.traverseFlowable(TraverseDirection.WIDER, rule, 
+	    																jnpm.getSettings().getTraversalPrefetch(), packages)
+					.doOnNext(t->ILogger.getLogger().log(String.format("Downloading %s@%s\n", t.getVersion().getName(), t.getVersion().getVersionAsString())));
+			flowable.flatMapCompletable(t -> t.install(targetPath, strategy), false, jnpm.getSettings().getDownloadThreads())
+					.blockingAwait();
+    	} finally {
+    		//Service of this module only should not keep threads of the build alive
+    		if(ownService) jnpm.close();
+    	}
 		if(attachResources) projectHelper.addResource(project, outputDirectory.getAbsolutePath(), includes, excludes);
     }
     
@@ -195,12 +317,41 @@ public class JNPMMojo
     			if(password==null) password = server.getPassword();
     		}
     	}
+    	List<ScopedRegistry> registries = new ArrayList<>();
+    	if(scopedRegistries!=null) {
+    		for (Map.Entry<String, String> entry : scopedRegistries.entrySet()) {
+    			ScopedRegistry registry = ScopedRegistry.of(entry.getKey(), entry.getValue());
+    			Server server = settings!=null?settings.getServer(registry.getScope()):null;
+    			if(server!=null) {
+    				registry = registry.toBuilder()
+    								   .username(server.getUsername())
+    								   .password(server.getPassword())
+    								   .build();
+    			}
+    			registries.add(registry);
+    		}
+    	}
     	return JNPMSettings.builder()
     					   .registryUrl(registryUrl)
     					   .username(username)
     					   .password(password)
     					   .httpLoggerLevel(httpLoggerLevel)
     					   .useCache(useCache)
+    					   .useAbbreviatedMetadata(useAbbreviatedMetadata)
+    					   .parsingProfile(parsingProfile)
+    					   .useHttp2(useHttp2)
+    					   .maxIdleConnections(maxIdleConnections)
+    					   .keepAliveDuration(keepAliveDuration)
+    					   .maxRequests(maxRequests)
+    					   .maxRequestsPerHost(maxRequestsPerHost)
+    					   .connectTimeout(connectTimeout)
+    					   .readTimeout(readTimeout)
+    					   .writeTimeout(writeTimeout)
+    					   .mirrorUrls(mirrorUrls!=null?mirrorUrls:Collections.emptyList())
+    					   .mirrorPolicy(mirrorPolicy)
+    					   .scopedRegistries(registries)
+    					   .executionModel(executionModel)
+    					   .traversalPrefetch(traversalPrefetch)
     					   .logger(new ILogger() {
 								@Override
 								public void log(String message, Throwable exc) {